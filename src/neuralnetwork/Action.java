@@ -1,5 +1,7 @@
 package neuralnetwork;
 
+import java.util.List;
+
 //action class holding information about the types of actions available for the game
 public class Action {
 
@@ -8,6 +10,10 @@ public class Action {
     public static final Action EAST = new Action("EAST", 1, 0);
     public static final Action WEST = new Action("WEST", -1, 0);
 
+    //every action in index() order, so a Q-value vector from the network can be read as qValues[action.index()]
+    public static final List<Action> ALL = List.of(NORTH, SOUTH, EAST, WEST);
+    public static final int COUNT = ALL.size();
+
     private final String name;
     private final int deltaX;
     private final int deltaY;
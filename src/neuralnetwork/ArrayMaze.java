@@ -0,0 +1,27 @@
+package neuralnetwork;
+
+//MazeGrid view of a maze held as an int[][] (1 = wall), as built by MazeApp
+//lets State handle in-memory and out-of-core mazes through the same code
+public class ArrayMaze implements MazeGrid {
+
+    private final int[][] maze;
+
+    public ArrayMaze(int[][] maze) {
+        this.maze = maze;
+    }
+
+    @Override
+    public int getWidth() {
+        return maze.length;
+    }
+
+    @Override
+    public int getHeight() {
+        return maze[0].length;
+    }
+
+    @Override
+    public boolean isWall(int x, int y) {
+        return maze[x][y] == 1;
+    }
+}
@@ -12,9 +12,24 @@ public class EpsilonSoft {
     private Random random;
 
     public EpsilonSoft(double epsilon, double tau) {
+        this(epsilon, tau, new Random());
+    }
+
+    //draw every choice from the given source, so a seeded run picks the same actions
+    public EpsilonSoft(double epsilon, double tau, Random random) {
         this.epsilon = epsilon;
         this.tau = tau;
-        this.random = new Random();
+        this.random = random;
+    }
+
+    //select an action from the full Q-value vector of the state-only network head
+    //the head returns one Q-value per action in Action.index() order, so only the available actions are gathered
+    public Action selectActionFromHead(double[] headQValues, List<Action> actions) {
+        double[] qValues = new double[actions.size()];
+        for (int i = 0; i < actions.size(); i++) {
+            qValues[i] = headQValues[actions.get(i).index()];
+        }
+        return selectAction(qValues, actions);
     }
 
     //
@@ -53,7 +68,7 @@ public class EpsilonSoft {
     }
 
     private Action selectActionFromProbs(double[] probs, List<Action> actions) {
-        double randomValue = Math.random();
+        double randomValue = random.nextDouble();
         double cumulativeProb = 0.0;
 
         //loop through the probabilites of each action
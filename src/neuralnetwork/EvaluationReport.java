@@ -0,0 +1,61 @@
+package neuralnetwork;
+
+//results of evaluating the greedy policy over a set of start cells
+public class EvaluationReport {
+
+    private final int evaluated;      //number of start cells rolled out
+    private final long successes;     //rollouts that reached the goal
+    private final long loops;         //rollouts that revisited a cell or got stuck before the goal
+    private final double pathRatioSum; //sum over successful rollouts of steps taken / optimal steps
+    private final long steps;         //total steps taken across every rollout
+    private final long elapsedNanos;
+
+    public EvaluationReport(int evaluated, long successes, long loops, double pathRatioSum, long steps, long elapsedNanos) {
+        this.evaluated = evaluated;
+        this.successes = successes;
+        this.loops = loops;
+        this.pathRatioSum = pathRatioSum;
+        this.steps = steps;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    //getters
+    public int getEvaluated() {
+        return evaluated;
+    }
+
+    public long getSuccesses() {
+        return successes;
+    }
+
+    public long getLoops() {
+        return loops;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public double getSuccessRate() {
+        return evaluated == 0 ? 0.0 : (double) successes / evaluated;
+    }
+
+    //mean of steps taken / optimal steps over the successful rollouts, 1.0 is an optimal policy
+    public double getMeanPathRatio() {
+        return successes == 0 ? Double.NaN : pathRatioSum / successes;
+    }
+
+    public double getEvaluationsPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : evaluated / (elapsedNanos / 1e9);
+    }
+
+    public double getElapsedSeconds() {
+        return elapsedNanos / 1e9;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("evaluated=%d success=%.3f pathRatio=%.3f loops=%d steps=%d evals/s=%.1f",
+                evaluated, getSuccessRate(), getMeanPathRatio(), loops, steps, getEvaluationsPerSecond());
+    }
+}
@@ -7,12 +7,20 @@ public class Experience {
     private final State currentState, nextState; //the current given state and the next state, stored as coordinates in arrays
     private Action action, nextAction; //the current action about to be taken and the next action to be taken, stored as integers
     private double rewardReceived;  //the reward received from that action in that state
+    private final int steps;    //number of discounted rewards folded into rewardReceived before reaching nextState
     
     public Experience(State currentState, Action action, double rewardReceived, State nextState){
+        this(currentState, action, rewardReceived, nextState, 1);
+    }
+    
+    //experience spanning several steps, rewardReceived is the discounted sum of their rewards
+    //and the Q-value of nextState is discounted by gamma^steps
+    public Experience(State currentState, Action action, double rewardReceived, State nextState, int steps){
         this.currentState = currentState;
         this.action = action;
         this.rewardReceived = rewardReceived;
         this.nextState = nextState;
+        this.steps = steps;
     }
     
     
@@ -51,4 +59,8 @@ public class Experience {
     public Action getNextAction(){
         return nextAction;
     }
+    
+    public int getSteps(){
+        return steps;
+    }
 }
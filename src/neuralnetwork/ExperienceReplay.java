@@ -12,9 +12,14 @@ public class ExperienceReplay {
     private final Random random;
     
     public ExperienceReplay(int bufferSize){
+        this(bufferSize, new Random());
+    }
+    
+    //sample and replace from the given source, so a seeded run replays the same experiences
+    public ExperienceReplay(int bufferSize, Random random){
         this.bufferSize = bufferSize;
         this.replayBuffer = new ArrayList<>();
-        this.random = new Random();
+        this.random = random;
     }
     
     //add an experience to the buffer
@@ -1,5 +1,7 @@
 package neuralnetwork;
 
+import java.util.Random;
+
 //the hidden layer appplies transformations to inputs using weights and biases
 //it then applies and activation function (ReLU) to the result before it passing it into the next layer
 public class Hidden extends Layer {
@@ -8,6 +10,10 @@ public class Hidden extends Layer {
         super(inputSize, outputSize);
     }
 
+    public Hidden(int inputSize, int outputSize, Random random) {
+        super(inputSize, outputSize, random);
+    }
+
     //forward pass, calculating the output for each neuron in current layer
     @Override
     public double[] forward(double[] inputs) {
@@ -9,6 +9,11 @@ public class Input extends Layer {
         super(inputSize, outputSize);
     }
 
+    //input layer without a weight matrix, it only forwards its inputs so none is ever read
+    public Input() {
+        super();
+    }
+
     @Override
     public double[] forward(double[] inputs) {
         //input and outputs should match since no transformation is applied yet
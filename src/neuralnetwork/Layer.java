@@ -7,12 +7,28 @@ public abstract class Layer {
     protected double[] biases;
     protected double[] outputs;
     protected double[] inputs;
+    private long version; //bumped every time the weights or biases change, so cached predictions can detect staleness
 
     public Layer(int inputSize, int outputSize) {
+        this(inputSize, outputSize, new Random());
+    }
+
+    //initialize the weights from the given source, so networks built from the same seed start out identical
+    //a null source leaves the weights at zero, for layers whose weights are about to be overwritten
+    public Layer(int inputSize, int outputSize, Random random) {
         weights = new double[inputSize][outputSize];
         biases = new double[outputSize];
         outputs = new double[outputSize];
-        initWeights();
+        if (random != null) {
+            initWeights(random);
+        }
+    }
+
+    //for layers that only pass values through and have no weights or biases
+    protected Layer() {
+        weights = new double[0][0];
+        biases = new double[0];
+        outputs = new double[0];
     }
 
     
@@ -20,9 +36,7 @@ public abstract class Layer {
     //w ~ N(0,(2/n))
     //where w = weight
     //and N(0,(2/n)) is a gaussian distribution with mean = 0 and n is number of neurons in previous layer / inputs to the current layer
-    private void initWeights() {
-        Random random = new Random();
-        
+    private void initWeights(Random random) {
         //for every weight, a random number is gotten from a gaussian distribution
         //centered at 0 with a SD of sqrt(2/n)
         for(int i = 0; i < weights.length; i++) {
@@ -51,6 +65,26 @@ public abstract class Layer {
         for(int j = 0; j < biases.length; j++){
             biases[j] -= learningRate * biasGradients[j];
         }
+        version++;
+    }
+    
+    //overwrite the weights and biases of this layer with those of a layer of the same shape
+    public void copyParameters(Layer source) {
+        for (int i = 0; i < weights.length; i++) {
+            System.arraycopy(source.weights[i], 0, weights[i], 0, weights[i].length);
+        }
+        System.arraycopy(source.biases, 0, biases, 0, biases.length);
+        version++;
+    }
+    
+    //number of times the weights of this layer have changed
+    public long getVersion(){
+        return version;
+    }
+    
+    //for subclasses that change the weights without going through updateWeights
+    protected void bumpVersion(){
+        version++;
     }
     
     //abstract method for the forward pass
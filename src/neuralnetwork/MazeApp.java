@@ -2,6 +2,8 @@ package neuralnetwork;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Random;
 import java.util.HashMap;
 import java.util.Map;
@@ -59,28 +61,42 @@ public class MazeApp {
         frame.setVisible(true);
     }
 
+    // Generate a GRID_SIZE maze for the GUI
     private int[][] generateMaze() {
-        int[][] maze = new int[GRID_SIZE][GRID_SIZE];
+        return generateMaze(GRID_SIZE);
+    }
+
+    // Generate a size x size maze, with the start at (1, 1) and the goal at (size - 3, size - 3)
+    public static int[][] generateMaze(int size) {
+        return generateMaze(size, new Random());
+    }
+
+    // Generate a maze from the given random source, so the same maze can be rebuilt for comparisons
+    public static int[][] generateMaze(int size, Random random) {
+        int[][] maze = new int[size][size];
 
         // Initialize all cells as walls
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
                 maze[i][j] = 1; // Wall
             }
         }
 
         // Start carving paths from the first cell
-        carvePath(maze, 1, 1);
+        carvePath(maze, 1, 1, random);
 
         // Set start and end points
         maze[1][1] = 0; // Start point
-        maze[GRID_SIZE - 3][GRID_SIZE - 3] = 0; // Goal point
+        maze[size - 3][size - 3] = 0; // Goal point
 
         return maze;
     }
 
     // DFS maze generation
-    private void carvePath(int[][] maze, int x, int y) {
+    // Uses an explicit stack instead of recursion so large mazes do not overflow the call stack
+    private static void carvePath(int[][] maze, int startX, int startY, Random random) {
+        int size = maze.length;
+
         // Define directions: (dx, dy)
         int[][] directions = {
             {2, 0}, // East
@@ -89,30 +105,45 @@ public class MazeApp {
             {0, -2} // North
         };
 
-        // Shuffle the directions to ensure random carving
-        Random random = new Random();
-        for (int i = 0; i < directions.length; i++) {
-            int j = random.nextInt(directions.length);
-            // Swap
-            int[] temp = directions[i];
-            directions[i] = directions[j];
-            directions[j] = temp;
-        }
+        Deque<int[]> stack = new ArrayDeque<>();
+        maze[startX][startY] = 0;
+        stack.push(new int[]{startX, startY});
+
+        int[] candidates = new int[directions.length];
+        while (!stack.isEmpty()) {
+            int[] cell = stack.peek();
+            int x = cell[0];
+            int y = cell[1];
+
+            // Collect the directions leading to cells that have not been visited yet
+            int count = 0;
+            for (int d = 0; d < directions.length; d++) {
+                int newX = x + directions[d][0];
+                int newY = y + directions[d][1];
+
+                // Check if the new coordinates are within bounds and if the cell has not been visited
+                if (newX > 0 && newX < size - 1 && newY > 0 && newY < size - 1 && maze[newX][newY] == 1) {
+                    candidates[count++] = d;
+                }
+            }
 
-        // Carve paths in each direction
-        for (int[] dir : directions) {
+            // Dead end, backtrack to the previous cell
+            if (count == 0) {
+                stack.pop();
+                continue;
+            }
+
+            // Pick a random unvisited neighbour to ensure random carving
+            int[] dir = directions[candidates[random.nextInt(count)]];
             int newX = x + dir[0];
             int newY = y + dir[1];
 
-            // Check if the new coordinates are within bounds and if the cell has not been visited
-            if (newX > 0 && newX < GRID_SIZE - 1 && newY > 0 && newY < GRID_SIZE - 1 && maze[newX][newY] == 1) {
-                // Carve a path between the current cell and the new cell
-                maze[x + dir[0] / 2][y + dir[1] / 2] = 0; // Remove wall between
-                maze[newX][newY] = 0; // Carve the new cell
+            // Carve a path between the current cell and the new cell
+            maze[x + dir[0] / 2][y + dir[1] / 2] = 0; // Remove wall between
+            maze[newX][newY] = 0; // Carve the new cell
 
-                // Recursively carve from the new cell
-                carvePath(maze, newX, newY);
-            }
+            // Continue carving from the new cell
+            stack.push(new int[]{newX, newY});
         }
     }
 }
@@ -0,0 +1,15 @@
+package neuralnetwork;
+
+//read-only view of a maze that answers the wall queries needed to build a State
+//lets mazes that do not fit in an int[][] (such as TiledMaze) be explored the same way
+public interface MazeGrid {
+
+    //number of cells along x
+    int getWidth();
+
+    //number of cells along y
+    int getHeight();
+
+    //true if the cell at (x, y) is a wall, the coordinates must be inside the maze
+    boolean isWall(int x, int y);
+}
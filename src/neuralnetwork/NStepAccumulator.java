@@ -0,0 +1,120 @@
+package neuralnetwork;
+
+//streaming n-step return stage placed between stepping an environment and ExperienceReplay.addExperience
+//keeps the last n transitions of one environment in a fixed-size ring and folds their rewards into
+//G = r(t) + gamma * r(t+1) + ... + gamma^(n-1) * r(t+n-1) as they arrive, so each step costs O(1)
+//once n rewards are held, (s(t), a(t), G, s(t+n)) is emitted and the network bootstraps from s(t+n) with gamma^n
+//sliding the window divides G by gamma, which amplifies rounding error by 1/gamma per step, so G is summed
+//exactly again before that amplification passes MAX_AMPLIFICATION; for a small gamma this is every step
+//one accumulator is needed per environment since transitions from different episodes must not be mixed
+public class NStepAccumulator {
+
+    private static final double MAX_AMPLIFICATION = 1e3; //largest growth of rounding error allowed between exact sums
+
+    private final int n;
+    private final double gamma;
+    private final double[] gammaPowers; //gamma^k for k = 0..n
+    private final ExperienceReplay replay;
+
+    //ring of the pending transitions, oldest at head
+    private final State[] states;
+    private final Action[] actions;
+    private final double[] rewards;
+    private int head;
+    private int count;
+
+    private double discountedReturn;    //G for the transition at head
+    private double amplification = 1.0; //product of 1/gamma over the slides since G was last summed exactly
+    private State lastNextState;        //state reached by the newest transition, bootstrapped from when flushing
+
+    public NStepAccumulator(int n, double gamma, ExperienceReplay replay) {
+        if (n < 1) {
+            throw new IllegalArgumentException("n must be at least 1: " + n);
+        }
+        //removing the oldest reward divides by gamma, so gamma must be positive
+        if (gamma <= 0 || gamma > 1) {
+            throw new IllegalArgumentException("gamma must be in (0, 1]: " + gamma);
+        }
+
+        this.n = n;
+        this.gamma = gamma;
+        this.replay = replay;
+        this.gammaPowers = new double[n + 1];
+        gammaPowers[0] = 1.0;
+        for (int k = 1; k <= n; k++) {
+            gammaPowers[k] = gammaPowers[k - 1] * gamma;
+        }
+
+        this.states = new State[n];
+        this.actions = new Action[n];
+        this.rewards = new double[n];
+    }
+
+    //add the transition from taking action in state, nextState is null if the episode ended
+    public void step(State state, Action action, double reward, State nextState) {
+        int tail = (head + count) % n;
+        states[tail] = state;
+        actions[tail] = action;
+        rewards[tail] = reward;
+
+        //the new reward is count steps after the oldest pending transition
+        discountedReturn += gammaPowers[count] * reward;
+        count++;
+        lastNextState = nextState;
+
+        if (nextState == null) {
+            //terminal, every pending transition has now seen all of its rewards
+            flush();
+        } else if (count == n) {
+            emitOldest(nextState, n);
+        }
+    }
+
+    //emit every pending transition, call when an episode is cut off or has ended
+    //transitions bootstrap from the last state reached, or from nothing if the episode ended in a terminal state
+    public void flush() {
+        while (count > 0) {
+            emitOldest(lastNextState, count);
+        }
+        discountedReturn = 0.0;
+        amplification = 1.0;
+        lastNextState = null;
+    }
+
+    //number of transitions waiting for more rewards
+    public int getPending() {
+        return count;
+    }
+
+    private void emitOldest(State bootstrapState, int steps) {
+        replay.addExperience(new Experience(states[head], actions[head], discountedReturn, bootstrapState, steps));
+
+        //slide the window forward: G(t+1) = (G(t) - r(t)) / gamma
+        double oldestReward = rewards[head];
+        states[head] = null;
+        actions[head] = null;
+        head = (head + 1) % n;
+        count--;
+
+        if (count == 0) {
+            discountedReturn = 0.0;
+            amplification = 1.0;
+        } else if (head == 0 || amplification / gamma > MAX_AMPLIFICATION) {
+            //recompute exactly at least once per lap of the ring, and sooner when gamma is small
+            //once per lap is O(n) every n emits, keeping each step O(1) on average
+            discountedReturn = recompute();
+            amplification = 1.0;
+        } else {
+            discountedReturn = (discountedReturn - oldestReward) / gamma;
+            amplification /= gamma;
+        }
+    }
+
+    private double recompute() {
+        double sum = 0.0;
+        for (int k = 0; k < count; k++) {
+            sum += gammaPowers[k] * rewards[(head + k) % n];
+        }
+        return sum;
+    }
+}
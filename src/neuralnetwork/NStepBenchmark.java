@@ -0,0 +1,155 @@
+package neuralnetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+//compares n-step returns against 1-step returns on the same mazes
+//reports the number of network updates and the wall time until the greedy policy reaches the goal from the start
+//every source of randomness is seeded, and each maze is trained from several seeds since a single
+//run depends heavily on the initial weights; both variants see the same seeds so the comparison is paired
+//usage: NStepBenchmark [maze size] [n] [trials] [seeds per maze]
+public class NStepBenchmark {
+
+    private static final double GOAL_REWARD = 1.0;
+    private static final double ALPHA = 0.01;
+    private static final double GAMMA = 0.95;
+    private static final int[] HIDDEN_SIZES = {32, 32};
+    private static final int BUFFER_SIZE = 10_000;
+    private static final int BATCH_SIZE = 8;         //updates per environment step
+    private static final int EVALUATE_EVERY = 10;    //episodes between greedy rollouts from the start
+    private static final int MAX_UPDATES = 5_000_000;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 8; //even, so the goal at size - 3 is a room
+        int n = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int trials = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int seeds = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+
+        for (int trial = 0; trial < trials; trial++) {
+            //both runs train on the same maze
+            int[][] maze = MazeApp.generateMaze(size, new Random(trial));
+            PolicyEvaluator evaluator = new PolicyEvaluator(maze, size - 3, size - 3);
+
+            Summary oneStep = new Summary();
+            Summary nStep = new Summary();
+            for (int seed = 0; seed < seeds; seed++) {
+                oneStep.add(solve(maze, evaluator, 1, seed));
+                nStep.add(solve(maze, evaluator, n, seed));
+            }
+            System.out.printf("trial=%d optimal=%d | n=1 %s | n=%d %s%n",
+                    trial, evaluator.getDistance(1, 1), oneStep, n, nStep);
+        }
+    }
+
+    //train until the greedy policy from (1, 1) reaches the goal
+    //the seed fixes the initial weights, the replay sampling and the exploration
+    private static Result solve(int[][] maze, PolicyEvaluator evaluator, int n, long seed) {
+        int goal = maze.length - 3;
+        int maxSteps = 4 * maze.length * maze.length;
+
+        Random random = new Random(seed);
+        QLearningNetwork network = new QLearningNetwork(HIDDEN_SIZES, ALPHA, GAMMA, new Random(random.nextLong()));
+        ExperienceReplay replay = new ExperienceReplay(BUFFER_SIZE, new Random(random.nextLong()));
+        NStepAccumulator accumulator = new NStepAccumulator(n, GAMMA, replay);
+        EpsilonSoft policy = new EpsilonSoft(0.2, 0.1, new Random(random.nextLong()));
+
+        long updates = 0;
+        int episodes = 0;
+        long start = System.nanoTime();
+        List<Action> open = new ArrayList<>(Action.COUNT);
+
+        while (updates < MAX_UPDATES) {
+            State state = new State(1, 1, maze);
+            for (int t = 0; t < maxSteps; t++) {
+                open.clear();
+                for (Action action : Action.ALL) {
+                    if (state.isPath(action)) {
+                        open.add(action);
+                    }
+                }
+
+                Action action = policy.selectActionFromHead(network.predict(state), open);
+                State next = state.getNextState(action, maze);
+                boolean atGoal = next.getX() == goal && next.getY() == goal;
+
+                accumulator.step(state, action, atGoal ? GOAL_REWARD : 0.0, atGoal ? null : next);
+
+                //the replay stays empty until the first n steps have been folded
+                Experience sample = replay.sampleExperience();
+                if (sample != null) {
+                    network.train(sample);
+                    for (int b = 1; b < BATCH_SIZE; b++) {
+                        network.train(replay.sampleExperience());
+                    }
+                    updates += BATCH_SIZE;
+                }
+
+                if (atGoal) {
+                    break;
+                }
+                state = next;
+            }
+            accumulator.flush();
+            episodes++;
+
+            if (episodes % EVALUATE_EVERY == 0) {
+                int steps = evaluator.rollout(network, 1, 1);
+                if (steps >= 0) {
+                    return new Result(true, updates, episodes, steps, System.nanoTime() - start);
+                }
+            }
+        }
+        return new Result(false, updates, episodes, -1, System.nanoTime() - start);
+    }
+
+    //outcome of one training run
+    private static class Result {
+
+        private final boolean solved;
+        private final long updates;
+        private final int episodes;
+        private final int pathLength;
+        private final long elapsedNanos;
+
+        Result(boolean solved, long updates, int episodes, int pathLength, long elapsedNanos) {
+            this.solved = solved;
+            this.updates = updates;
+            this.episodes = episodes;
+            this.pathLength = pathLength;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s updates=%d episodes=%d path=%d time=%.2fs",
+                    solved ? "solved" : "unsolved", updates, episodes, pathLength, elapsedNanos / 1e9);
+        }
+    }
+
+    //mean over the runs from every seed on one maze, unsolved runs count with the updates they used up
+    private static class Summary {
+
+        private int runs;
+        private int solved;
+        private long updates;
+        private long episodes;
+        private long elapsedNanos;
+
+        void add(Result result) {
+            runs++;
+            if (result.solved) {
+                solved++;
+            }
+            updates += result.updates;
+            episodes += result.episodes;
+            elapsedNanos += result.elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("solved=%d/%d mean updates=%d episodes=%d time=%.2fs",
+                    solved, runs, updates / runs, episodes / runs, elapsedNanos / 1e9 / runs);
+        }
+    }
+}
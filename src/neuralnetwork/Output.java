@@ -1,11 +1,17 @@
 package neuralnetwork;
 
+import java.util.Random;
+
 public class Output extends Layer {
 
     public Output(int inputSize, int outputSize) {
         super(inputSize, outputSize);
     }
 
+    public Output(int inputSize, int outputSize, Random random) {
+        super(inputSize, outputSize, random);
+    }
+
     @Override
     public double[] forward(double[] inputs) {
         this.inputs = inputs;
@@ -21,10 +27,13 @@ public class Output extends Layer {
     
     @Override
     public double[] calcNextGradients(double[] layerGradients) {
-        //the output layer computes the gradients based on the loss
+        //the output layer is linear, so the gradient for each input is the sum of
+        //the output gradients weighted by the connection to that input
         double[] gradients = new double[inputs.length];
         for (int i = 0; i < gradients.length; i++){
-            gradients[i] = layerGradients[i] * inputs[i];
+            for (int j = 0; j < layerGradients.length; j++){
+                gradients[i] += layerGradients[j] * weights[i][j];
+            }
         }
         
         return gradients;
@@ -0,0 +1,319 @@
+package neuralnetwork;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+//evaluates how good the greedy policy of a trained network is over a whole maze
+//a BFS from the goal gives the optimal distance of every open cell, then the greedy policy
+//is followed from every open start cell (or a sample of them) and compared against it
+public class PolicyEvaluator {
+
+    public static final int UNREACHABLE = -1;
+
+    private static final int UNKNOWN = -1;                //successor not computed yet
+    private static final int NO_MOVE = -2;                //successor of a cell with no open neighbour
+    private static final int UNRESOLVED = Integer.MIN_VALUE; //outcome not resolved yet
+
+    private final int[][] maze;
+    private final int width;
+    private final int height;
+    private final int goalX;
+    private final int goalY;
+    private final int[] distances; //optimal number of steps to the goal for every cell, indexed by x * height + y
+    private final int[] starts;    //every open cell that can reach the goal, excluding the goal itself
+
+    public PolicyEvaluator(int[][] maze, int goalX, int goalY) {
+        this.maze = maze;
+        this.width = maze.length;
+        this.height = maze[0].length;
+        this.goalX = goalX;
+        this.goalY = goalY;
+        this.distances = computeDistances();
+        this.starts = collectStarts();
+    }
+
+    //BFS outwards from the goal, visiting every open cell once
+    //moves are reversible so the distance from the goal to a cell is the distance from that cell to the goal
+    private int[] computeDistances() {
+        int[] dist = new int[width * height];
+        Arrays.fill(dist, UNREACHABLE);
+
+        int[] queue = new int[width * height];
+        int head = 0;
+        int tail = 0;
+
+        int goal = goalX * height + goalY;
+        dist[goal] = 0;
+        queue[tail++] = goal;
+
+        while (head < tail) {
+            int cell = queue[head++];
+            int x = cell / height;
+            int y = cell % height;
+
+            for (Action action : Action.ALL) {
+                int newX = x + action.getDeltaX();
+                int newY = y + action.getDeltaY();
+                if (newX < 0 || newX >= width || newY < 0 || newY >= height || maze[newX][newY] == 1) {
+                    continue;
+                }
+
+                int next = newX * height + newY;
+                if (dist[next] == UNREACHABLE) {
+                    dist[next] = dist[cell] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        return dist;
+    }
+
+    private int[] collectStarts() {
+        int count = 0;
+        for (int d : distances) {
+            if (d > 0) {
+                count++;
+            }
+        }
+
+        int[] cells = new int[count];
+        int n = 0;
+        for (int cell = 0; cell < distances.length; cell++) {
+            if (distances[cell] > 0) {
+                cells[n++] = cell;
+            }
+        }
+        return cells;
+    }
+
+    //optimal number of steps from (x, y) to the goal, or UNREACHABLE
+    public int getDistance(int x, int y) {
+        return distances[x * height + y];
+    }
+
+    //number of open cells that the greedy policy can be evaluated from
+    public int getStartCount() {
+        return starts.length;
+    }
+
+    //evaluate the greedy policy from every start cell
+    public EvaluationReport evaluate(QLearningNetwork network) {
+        return evaluate(network, starts.length, new Random());
+    }
+
+    //evaluate the greedy policy from a random sample of start cells
+    //the greedy policy only depends on the cell, so every cell needs one greedy action no matter how many
+    //rollouts pass through it; the successor of each cell is computed once, then the outcome of every
+    //cell is resolved from its successor's, so a full evaluation costs O(cells) greedy actions
+    public EvaluationReport evaluate(QLearningNetwork network, int sampleSize, Random random) {
+        int[] sample = sampleStarts(sampleSize, random);
+
+        long startTime = System.nanoTime();
+        int[] successors = findSuccessors(network, sample);
+        int[] outcomes = resolveOutcomes(sample, successors);
+
+        long successes = 0;
+        long loops = 0;
+        long steps = 0;
+        double pathRatioSum = 0.0;
+        for (int start : sample) {
+            int taken = outcomes[start];
+            if (taken >= 0) {
+                successes++;
+                steps += taken;
+                pathRatioSum += (double) taken / distances[start];
+            } else {
+                loops++;
+                steps += -taken - 1;
+            }
+        }
+        long elapsedNanos = System.nanoTime() - startTime;
+
+        return new EvaluationReport(sample.length, successes, loops, pathRatioSum, steps, elapsedNanos);
+    }
+
+    //greedy successor of every cell reachable by following the policy from the sample, indexed by x * height + y
+    //the sample is split into one contiguous chunk per worker, each with its own copy of the network since
+    //its layers are not safe to share; the copies and scratch arrays are dropped once the chunks are done
+    private int[] findSuccessors(QLearningNetwork network, int[] sample) {
+        int[] successors = new int[width * height];
+        Arrays.fill(successors, UNKNOWN);
+        boolean[] done = new boolean[width * height];
+
+        int workers = Math.max(1, Math.min(sample.length, Runtime.getRuntime().availableProcessors()));
+        IntStream.range(0, workers).parallel().forEach(worker -> {
+            Explorer explorer = new Explorer(network.copy());
+            int from = (int) ((long) sample.length * worker / workers);
+            int to = (int) ((long) sample.length * (worker + 1) / workers);
+            for (int i = from; i < to; i++) {
+                explorer.explore(sample[i], successors, done);
+            }
+        });
+        return successors;
+    }
+
+    //outcome of following the greedy policy from every cell reachable from the sample
+    //the number of steps if the goal is reached, otherwise -(steps + 1) with steps taken before a cell repeats,
+    //matching a direct rollout: a cell on a cycle walks the whole cycle, and a cell leading into a failure
+    //takes one step more than its successor
+    private int[] resolveOutcomes(int[] sample, int[] successors) {
+        int[] outcomes = new int[width * height];
+        Arrays.fill(outcomes, UNRESOLVED);
+        outcomes[goalX * height + goalY] = 0;
+
+        int[] path = new int[width * height];
+        int[] position = new int[width * height]; //1 + index of the cell in the current path, 0 when not on it
+
+        for (int start : sample) {
+            //walk until a cell with a known outcome or a cell already on this path
+            int count = 0;
+            int cell = start;
+            while (outcomes[cell] == UNRESOLVED && position[cell] == 0) {
+                if (successors[cell] == NO_MOVE) {
+                    //boxed in with no open neighbour, stuck without taking a step
+                    outcomes[cell] = -1;
+                    break;
+                }
+                path[count] = cell;
+                position[cell] = ++count;
+                cell = successors[cell];
+            }
+
+            //the walk came back onto itself, every cell from the repeated one onwards is on a cycle
+            int tail = count;
+            if (outcomes[cell] == UNRESOLVED) {
+                tail = position[cell] - 1;
+                int length = count - tail;
+                for (int i = tail; i < count; i++) {
+                    outcomes[path[i]] = -(length + 1);
+                }
+            }
+
+            //the cells leading in take one step more than their successor
+            for (int i = tail - 1; i >= 0; i--) {
+                int next = outcomes[successors[path[i]]];
+                outcomes[path[i]] = (next >= 0) ? next + 1 : next - 1;
+            }
+
+            for (int i = 0; i < count; i++) {
+                position[path[i]] = 0;
+            }
+        }
+        return outcomes;
+    }
+
+    private int[] sampleStarts(int sampleSize, Random random) {
+        if (sampleSize >= starts.length) {
+            return starts;
+        }
+
+        //partial Fisher-Yates shuffle over a copy, only the first sampleSize cells are needed
+        int[] cells = starts.clone();
+        for (int i = 0; i < sampleSize; i++) {
+            int j = i + random.nextInt(cells.length - i);
+            int temp = cells[i];
+            cells[i] = cells[j];
+            cells[j] = temp;
+        }
+        return Arrays.copyOf(cells, sampleSize);
+    }
+
+    //follow the greedy policy from a single start cell
+    //returns the number of steps taken to reach the goal, or -1 if the policy loops or gets stuck
+    //the greedy policy only depends on the cell, so revisiting a cell means it will loop forever
+    public int rollout(QLearningNetwork network, int startX, int startY) {
+        boolean[] visited = new boolean[width * height];
+        State state = new State(startX, startY, maze);
+        int steps = 0;
+
+        while (state.getX() != goalX || state.getY() != goalY) {
+            int cell = state.getX() * height + state.getY();
+            if (visited[cell]) {
+                return -1;
+            }
+            visited[cell] = true;
+
+            Action action = greedyAction(network, state);
+            if (action == null) {
+                //boxed in with no open neighbour, treat it like a loop since the goal cannot be reached
+                return -1;
+            }
+            state = state.getNextState(action, maze);
+            steps++;
+        }
+        return steps;
+    }
+
+    //greedy action for the state, chosen only from the actions that lead onto a path
+    //the state-only head scores every action in one pass, otherwise each action needs its own pass
+    static Action greedyAction(QLearningNetwork network, State state) {
+        double[] headQValues = (network.getHead() == QLearningNetwork.Head.STATE) ? network.predict(state) : null;
+
+        Action best = null;
+        double bestQ = Double.NEGATIVE_INFINITY;
+        for (Action action : Action.ALL) {
+            if (!state.isPath(action)) {
+                continue;
+            }
+
+            double q = (headQValues != null)
+                    ? headQValues[action.index()]
+                    : network.predict(new Experience(state, action, 0, null))[action.index()];
+            if (best == null || q > bestQ) {
+                best = action;
+                bestQ = q;
+            }
+        }
+        return best;
+    }
+
+    //a single worker's scratch state for exploring its chunk of the sample
+    private class Explorer {
+
+        private final QLearningNetwork network;
+        private final int[] path;    //cells of the current walk in order
+        private final int[] visited; //stamp of the walk that last visited each cell, so it never needs clearing
+        private int stamp;
+
+        Explorer(QLearningNetwork network) {
+            this.network = network;
+            this.path = new int[width * height];
+            this.visited = new int[width * height];
+        }
+
+        //follow the greedy policy from the start, filling in the successor of every cell passed that has none yet
+        //a walk stops at the goal, at a boxed in cell, on revisiting one of its own cells, or on reaching a cell
+        //that a finished walk already passed, since the successors of everything after that cell are known
+        //workers share the arrays without locking: a stale read only repeats work, any two workers computing the
+        //successor of the same cell write the same value, and the join at the end of the chunks publishes every write
+        void explore(int start, int[] successors, boolean[] done) {
+            stamp++;
+            int goal = goalX * height + goalY;
+            int count = 0;
+            int cell = start;
+
+            while (cell != goal && !done[cell] && visited[cell] != stamp) {
+                visited[cell] = stamp;
+                path[count++] = cell;
+
+                if (successors[cell] == UNKNOWN) {
+                    State state = new State(cell / height, cell % height, maze);
+                    Action action = greedyAction(network, state);
+                    successors[cell] = (action == null) ? NO_MOVE
+                            : (state.getX() + action.getDeltaX()) * height + state.getY() + action.getDeltaY();
+                }
+                if (successors[cell] == NO_MOVE) {
+                    break;
+                }
+                cell = successors[cell];
+            }
+
+            //only marked once the walk has ended, so a cell marked done always has every successor after it filled in
+            for (int i = 0; i < count; i++) {
+                done[path[i]] = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package neuralnetwork;
+
+//cache of network predictions keyed by cell and action, for actors that keep evaluating the same inputs
+//every entry is tagged with the network's weight version when it was computed, so an entry left over
+//from older weights is simply treated as a miss and overwritten; nothing is cleared when the weights change
+//entries live in primitive arrays with open addressing: a key may sit in any of PROBES slots after its home
+//slot, and when all of them hold live entries for other keys the home slot is evicted, which bounds the size
+//several actors stepping in the same thread can share one cache over one snapshot of the weights
+//not safe to share between threads
+public class PredictionCache {
+
+    private static final int PROBES = 8;
+    private static final int STATE_SLOT = Action.COUNT; //action part of the key for predictions of the STATE head
+
+    private final QLearningNetwork network;
+    private final int mask;
+    private final int width;       //Q-values stored per entry
+    private final long[] keys;
+    private final long[] versions; //weight version + 1 of each entry, 0 for a slot that was never filled
+    private final double[] values; //width values per slot
+    private final double[] result; //returned to the caller, reused between calls
+
+    //metrics
+    private long hits;
+    private long misses;
+    private long staleMisses; //misses where the key was present but computed from older weights
+    private long evictions;
+
+    //create a cache holding up to capacity predictions, rounded up to a power of two
+    public PredictionCache(QLearningNetwork network, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+
+        int slots = Integer.highestOneBit(Math.max(capacity, PROBES) - 1) << 1;
+        this.network = network;
+        this.mask = slots - 1;
+        this.width = network.getOutputSize();
+        this.keys = new long[slots];
+        this.versions = new long[slots];
+        this.values = new double[slots * width];
+        this.result = new double[width];
+    }
+
+    //Q-values of every action in the state, for the STATE head
+    //the returned array is reused by the next call
+    public double[] predict(State state) {
+        return lookup(state, null, key(state, STATE_SLOT));
+    }
+
+    //Q-values for the state-action pair, for the STATE_ACTION head
+    //the returned array is reused by the next call
+    public double[] predict(State state, Action action) {
+        return lookup(state, action, key(state, action.index()));
+    }
+
+    private double[] lookup(State state, Action action, long key) {
+        long version = network.getWeightVersion() + 1;
+        int home = hash(key) & mask;
+
+        //look for the key, remembering the first slot that can be reused if it is missing
+        int free = -1;
+        for (int p = 0; p < PROBES; p++) {
+            int slot = (home + p) & mask;
+            if (versions[slot] == 0) {
+                //never filled, so the key is not further along
+                if (free < 0) {
+                    free = slot;
+                }
+                break;
+            }
+            if (keys[slot] == key) {
+                if (versions[slot] == version) {
+                    hits++;
+                    System.arraycopy(values, slot * width, result, 0, width);
+                    return result;
+                }
+                //computed from older weights, recompute into the same slot
+                staleMisses++;
+                misses++;
+                return store(slot, key, version, state, action);
+            }
+            if (versions[slot] != version && free < 0) {
+                //a stale entry for another key can be overwritten without losing anything current
+                free = slot;
+            }
+        }
+
+        misses++;
+        if (free < 0) {
+            free = home;
+            evictions++;
+        }
+        return store(free, key, version, state, action);
+    }
+
+    private double[] store(int slot, long key, long version, State state, Action action) {
+        double[] qValues = (action == null)
+                ? network.predict(state)
+                : network.predict(new Experience(state, action, 0, null));
+
+        keys[slot] = key;
+        versions[slot] = version;
+        System.arraycopy(qValues, 0, values, slot * width, width);
+        System.arraycopy(qValues, 0, result, 0, width);
+        return result;
+    }
+
+    //pack the cell coordinates and the action slot into one key
+    private static long key(State state, int actionSlot) {
+        return ((long) state.getX() << 35) | ((long) state.getY() << 3) | actionSlot;
+    }
+
+    //mix the bits of the key so neighbouring cells spread over the table
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    //getters for the metrics
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getStaleMisses() {
+        return staleMisses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public void resetMetrics() {
+        hits = 0;
+        misses = 0;
+        staleMisses = 0;
+        evictions = 0;
+    }
+}
@@ -0,0 +1,105 @@
+package neuralnetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+//several actors acting in turn from one snapshot of the weights, with and without a PredictionCache
+//a learner trains on the actors' transitions and the snapshot is refreshed from it every syncEvery actor steps,
+//which invalidates the cache; only the acting is timed, the learner's training is left out
+//both runs start from the same seeded learner and draw the same random numbers, so they take identical paths
+//usage: PredictionCacheBenchmark [maze size] [actors] [steps per actor] [sync every]
+public class PredictionCacheBenchmark {
+
+    private static final int[] HIDDEN_SIZES = {64, 64};
+    private static final int CAPACITY = 4096;
+    private static final int BUFFER_SIZE = 10_000;
+    private static final int UPDATES_PER_SYNC = 256; //learner updates between two refreshes of the snapshot
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int actors = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int steps = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+        int syncEvery = args.length > 3 ? Integer.parseInt(args[3]) : 5_000;
+
+        int[][] maze = MazeApp.generateMaze(size, new Random(size));
+
+        //warm up both paths before timing them
+        act(maze, false, actors, steps / 10, syncEvery);
+        act(maze, true, actors, steps / 10, syncEvery);
+
+        Run uncached = act(maze, false, actors, steps, syncEvery);
+        Run cached = act(maze, true, actors, steps, syncEvery);
+        PredictionCache cache = cached.cache;
+
+        long decisions = (long) actors * steps;
+        System.out.printf("maze=%dx%d actors=%d decisions=%d uncached=%.0f/s cached=%.0f/s speedup=%.1fx hitRate=%.4f stale=%d evictions=%d samePaths=%b%n",
+                size, size, actors, decisions, decisions / uncached.seconds, decisions / cached.seconds,
+                uncached.seconds / cached.seconds, cache.getHitRate(), cache.getStaleMisses(), cache.getEvictions(),
+                uncached.pathHash == cached.pathHash);
+    }
+
+    //every actor takes steps greedy-ish actions in turn, the learner trains on their transitions before each refresh
+    private static Run act(int[][] maze, boolean useCache, int actors, int steps, int syncEvery) {
+        int goal = maze.length - 3;
+        Random random = new Random(1);
+        QLearningNetwork learner = new QLearningNetwork(HIDDEN_SIZES, 0.01, 0.95, new Random(random.nextLong()));
+        QLearningNetwork snapshot = learner.copy();
+        PredictionCache cache = useCache ? new PredictionCache(snapshot, CAPACITY) : null;
+        ExperienceReplay replay = new ExperienceReplay(BUFFER_SIZE, new Random(random.nextLong()));
+        EpsilonSoft policy = new EpsilonSoft(0.1, 0.1, new Random(random.nextLong()));
+        List<Action> open = new ArrayList<>(Action.COUNT);
+
+        State[] states = new State[actors];
+        for (int a = 0; a < actors; a++) {
+            states[a] = new State(1, 1, maze);
+        }
+
+        long pathHash = 0;
+        long actorSteps = 0;
+        long trainingNanos = 0;
+        long start = System.nanoTime();
+        for (int s = 0; s < steps; s++) {
+            for (int a = 0; a < actors; a++) {
+                open.clear();
+                for (Action action : Action.ALL) {
+                    if (states[a].isPath(action)) {
+                        open.add(action);
+                    }
+                }
+
+                double[] qValues = (cache != null) ? cache.predict(states[a]) : snapshot.predict(states[a]);
+                Action action = policy.selectActionFromHead(qValues, open);
+                State next = states[a].getNextState(action, maze);
+                boolean atGoal = next.getX() == goal && next.getY() == goal;
+                replay.addExperience(new Experience(states[a], action, atGoal ? 1.0 : 0.0, atGoal ? null : next));
+                states[a] = atGoal ? new State(1, 1, maze) : next;
+                pathHash = 31 * pathHash + states[a].getX() * maze.length + states[a].getY();
+
+                if (++actorSteps % syncEvery == 0) {
+                    long trainStart = System.nanoTime();
+                    for (int u = 0; u < UPDATES_PER_SYNC; u++) {
+                        learner.train(replay.sampleExperience());
+                    }
+                    snapshot.loadWeights(learner);
+                    trainingNanos += System.nanoTime() - trainStart;
+                }
+            }
+        }
+        return new Run((System.nanoTime() - start - trainingNanos) / 1e9, pathHash, cache);
+    }
+
+    //outcome of one acting run
+    private static class Run {
+
+        private final double seconds; //time spent acting, excluding the learner's training
+        private final long pathHash;  //hash of every cell the actors stepped into, equal for runs that took the same paths
+        private final PredictionCache cache;
+
+        Run(double seconds, long pathHash, PredictionCache cache) {
+            this.seconds = seconds;
+            this.pathHash = pathHash;
+            this.cache = cache;
+        }
+    }
+}
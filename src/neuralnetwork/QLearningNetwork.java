@@ -1,39 +1,148 @@
 package neuralnetwork;
 
+import java.util.Random;
+
 public class QLearningNetwork {
 
+    //largest error backpropagated for a single output, larger errors are clipped (Huber-style loss)
+    //a single surprising target can otherwise push the weights far enough to diverge
+    private static final double MAX_ERROR = 1.0;
+
+    //the architecture of the network head
+    //STATE_ACTION feeds (state, one-hot action) and reads a single Q-value per forward pass
+    //STATE feeds the state alone and the output layer produces Q(s,a) for every action in one forward pass (DQN-style)
+    public enum Head {
+        STATE_ACTION, STATE
+    }
+
     private Layer input;    //create input layer
     private Layer[] hidden; //create hidden layers
     private Layer output;   //create output layer
     private double alpha;   //learning rate
     private double gamma;   //discount factor, reduces reward for every time step
+    private final Head head; //which inputs are fed and how the outputs are read
+    private final int inputSize;
+    private final int outputSize;
+    private final int[] hiddenSizes;
+    private final SparseEncoding encoding; //sparse layout of the inputs, null when inputs are fed densely
 
     //constructor for the network
     public QLearningNetwork(int inputSize, int outputSize, int[] hiddenSizes, double alpha, double gamma) {
+        this(Head.STATE_ACTION, inputSize, outputSize, hiddenSizes, alpha, gamma, null, new Random());
+    }
+
+    //constructor for a state-only network, the input is the encoded state and there is one output per action
+    public QLearningNetwork(int[] hiddenSizes, double alpha, double gamma) {
+        this(hiddenSizes, alpha, gamma, new Random());
+    }
+
+    //state-only network whose initial weights are drawn from the given source, for reproducible runs
+    public QLearningNetwork(int[] hiddenSizes, double alpha, double gamma, Random random) {
+        this(Head.STATE, State.INPUT_SIZE, Action.COUNT, hiddenSizes, alpha, gamma, null, random);
+    }
+
+    //constructor for a network whose first layer reads sparse inputs
+    //one-hot segments of the encoding are looked up as weight rows instead of being multiplied through
+    //the head is taken from the encoding, since the action segment is only laid out for the STATE_ACTION head
+    public QLearningNetwork(SparseEncoding encoding, int[] hiddenSizes, double alpha, double gamma) {
+        this(encoding.getHead(), encoding.size(), Action.COUNT, hiddenSizes, alpha, gamma, encoding, new Random());
+    }
+
+    private QLearningNetwork(Head head, int inputSize, int outputSize, int[] hiddenSizes, double alpha, double gamma, SparseEncoding encoding,
+            Random random) {
+        this.head = head;
+        this.encoding = encoding;
+        this.inputSize = inputSize;
+        this.outputSize = outputSize;
+        this.hiddenSizes = hiddenSizes.clone();
         this.alpha = alpha;
         this.gamma = gamma;
 
-        //initialize the layers
-        //input layer
-        input = new Input(inputSize, hiddenSizes[0]);
+        //initialize the layers, a null random leaves the weights at zero for copy() to overwrite
+        //input layer, it only forwards the encoded inputs so it holds no weights
+        input = new Input();
 
-        //hidden layers
+        //hidden layers, the first one takes the raw inputs forwarded by the input layer
         hidden = new Layer[hiddenSizes.length];
-        for (int i = 0; i < hiddenSizes.length - 1; i++) {
-            hidden[i] = new Hidden(hiddenSizes[i], hiddenSizes[i + 1]);
+        hidden[0] = (encoding != null) ? new SparseHidden(inputSize, hiddenSizes[0], random)
+                : new Hidden(inputSize, hiddenSizes[0], random);
+        for (int i = 1; i < hiddenSizes.length; i++) {
+            hidden[i] = new Hidden(hiddenSizes[i - 1], hiddenSizes[i], random);
         }
 
         //output layer
-        output = new Output(hiddenSizes[hiddenSizes.length - 1], outputSize);
+        output = new Output(hiddenSizes[hiddenSizes.length - 1], outputSize, random);
+    }
+
+    public Head getHead() {
+        return head;
+    }
+
+    //number of Q-values returned by each prediction
+    public int getOutputSize() {
+        return outputSize;
+    }
+
+    //create an independent network with the same architecture and a snapshot of the current weights
+    //layers keep their inputs and outputs between passes, so each thread predicting concurrently needs its own copy
+    public QLearningNetwork copy() {
+        QLearningNetwork copy = new QLearningNetwork(head, inputSize, outputSize, hiddenSizes, alpha, gamma, encoding, null);
+        copy.loadWeights(this);
+        return copy;
+    }
+
+    //overwrite the weights of this network with those of a network of the same architecture
+    //used to refresh a snapshot that actors predict from while another copy is trained
+    public void loadWeights(QLearningNetwork source) {
+        for (int i = 0; i < hidden.length; i++) {
+            hidden[i].copyParameters(source.hidden[i]);
+        }
+        output.copyParameters(source.output);
+    }
+
+    //changes every time any weight of the network changes, used to invalidate cached predictions
+    public long getWeightVersion() {
+        long version = output.getVersion();
+        for (Layer layer : hidden) {
+            version += layer.getVersion();
+        }
+        return version;
     }
 
     //forward pass through the network
     //predicted Q-values = Q(s,a)
     public double[] predict(Experience experience) {
-        double[] inputs = experience.getCurrentState().convertToInput(experience.getAction()); //encode details for easier input and management
-        double[] outputs = input.forward(inputs);   //forward encoded inputs
-        for (Layer layer : hidden) {
-            outputs = layer.forward(outputs);   //forward through hidden layers
+        if (head == Head.STATE) {
+            return predict(experience.getCurrentState());
+        }
+        return forward(experience.getCurrentState(), experience.getAction());
+    }
+
+    //forward pass of the state-only head
+    //returns Q(s,a) for every action in Action.index() order from a single pass
+    //the returned array is reused by the output layer, copy it if it must survive the next pass
+    public double[] predict(State state) {
+        if (head != Head.STATE) {
+            throw new IllegalStateException("Predicting from a state alone requires the STATE head");
+        }
+        return forward(state, null);
+    }
+
+    //encode details for easier input and management, the action is ignored by the STATE head
+    private double[] encodeDense(State state, Action action) {
+        return (head == Head.STATE) ? state.convertToInput() : state.convertToInput(action);
+    }
+
+    private double[] forward(State state, Action action) {
+        double[] outputs;
+        if (encoding != null) {
+            //the sparse first layer gathers weight rows directly, so the input layer is skipped
+            outputs = ((SparseHidden) hidden[0]).forward(encoding.encode(state, action));
+        } else {
+            outputs = hidden[0].forward(input.forward(encodeDense(state, action)));   //forward encoded inputs
+        }
+        for (int i = 1; i < hidden.length; i++) {
+            outputs = hidden[i].forward(outputs);   //forward through hidden layers
         }
         return output.forward(outputs);     //return output through output layer with Q-value prediction
     }
@@ -41,27 +150,37 @@ public class QLearningNetwork {
     //train network based on Q-learning update formula:
     //Qt(s,a) = Qt-1(s,a) + alpha* (R(s,a) + gamma * maxa' * Q(s',a') - Qt-1(s,a))
     public void train(Experience experience) {
+        if (head == Head.STATE) {
+            trainStateHead(experience);
+            return;
+        }
 
-        //predict the current Q-values for current state-action pair
-        //Qt-1(s,a)
-        double[] qValuesCurrent = predict(experience);
-
-        //predict the Q-values for the next state if it exists, otherwise initialize an array
-        //those Q-values correspond to Q(s',a') for all possible actions a' in the next state
-        double[] qValuesNext = (experience.getNextState() != null) ? predict(experience) : new double[qValuesCurrent.length];
-
-        //calculate maximum Q-value for the next state (s') across all possible actions (a')
-        //maxa' * Q(s',a')
-        double maxQNext = Double.NEGATIVE_INFINITY;
-        for (double qValue : qValuesNext) {
-            if (qValue > maxQNext) {
-                maxQNext = qValue;
+        //maxa' * Q(s',a') over the actions that can be taken from s', a terminal transition has no future value
+        //this head scores one action per forward pass, so each open action of s' needs its own pass
+        double maxQNext = 0.0;
+        State nextState = experience.getNextState();
+        if (nextState != null) {
+            maxQNext = Double.NEGATIVE_INFINITY;
+            for (Action action : Action.ALL) {
+                if (nextState.isPath(action)) {
+                    maxQNext = Math.max(maxQNext, forward(nextState, action)[action.index()]);
+                }
+            }
+            //a state boxed in by walls has nothing to bootstrap from
+            if (maxQNext == Double.NEGATIVE_INFINITY) {
+                maxQNext = 0.0;
             }
         }
 
+        //predict the current Q-values for current state-action pair
+        //Qt-1(s,a), copied since the output layer reuses its array
+        //this pass runs last so the layers still hold the activations of s when backpropagating
+        double[] networkOutput = predict(experience);
+        double[] qValuesCurrent = networkOutput.clone();
+
         //calculate the target Q-value using Q-learning update formula
         //targetValue = R(s,a) + gamma * maxQNext
-        double targetQValue = experience.getRewardReceived() + gamma * maxQNext;
+        double targetQValue = experience.getRewardReceived() + discount(experience) * maxQNext;
 
         //update Q-value for current action in current state
         //update Qt(s,a) with: alpha * (targetQValue - Qt-1(s,a))
@@ -69,52 +188,90 @@ public class QLearningNetwork {
         qValuesCurrent[actionIndex] += (alpha * (targetQValue - qValuesCurrent[actionIndex]));
 
         //backpropagate the updated Q-values through the neural network
-        backpropagate(experience, qValuesCurrent);
+        backpropagateLastPass(networkOutput, qValuesCurrent);
     }
 
-    public void backpropagate(Experience experience, double[] updatedQValues) {
-        //convert state-action pair to one-hot encoded input before putting into neural network
-        double[] stateInput = experience.getCurrentState().convertToInput(experience.getAction());
-        double[] inputs = new double[stateInput.length];
+    //training for the state-only head
+    //one pass over s' gives maxa' Q(s',a') and one pass over s gives Qt-1(s,a) for every action
+    //the pass over s runs last so backpropagation reuses its activations, two passes per transition
+    private void trainStateHead(Experience experience) {
+        //maxa' * Q(s',a') over the actions that can be taken from s', a terminal transition has no future value
+        //the head outputs a Q-value for moves into walls too, but those are never trained,
+        //so letting them into the max would feed back arbitrary values and diverge
+        double maxQNext = 0.0;
+        if (experience.getNextState() != null) {
+            maxQNext = maxOpen(predict(experience.getNextState()), experience.getNextState());
+        }
 
-        System.arraycopy(stateInput, 0, inputs, 0, stateInput.length);
+        //Qt-1(s,a) for all actions, copied since the output layer reuses its array
+        double[] networkOutput = predict(experience.getCurrentState());
+        double[] qValuesCurrent = networkOutput.clone();
 
-        //calculate the output of the neural network (predicted Q-values)
-        //based on the current state action pair
-        double[] networkOutput = predict(experience);
+        //only the Q-value of the action taken is moved towards the target, the others keep their prediction
+        double targetQValue = experience.getRewardReceived() + discount(experience) * maxQNext;
+        int actionIndex = experience.getAction().index();
+        qValuesCurrent[actionIndex] += (alpha * (targetQValue - qValuesCurrent[actionIndex]));
+
+        backpropagateLastPass(networkOutput, qValuesCurrent);
+    }
+
+    //discount applied to the bootstrapped Q-value, gamma for a single step and gamma^n for an n-step experience
+    private double discount(Experience experience) {
+        return (experience.getSteps() == 1) ? gamma : Math.pow(gamma, experience.getSteps());
+    }
 
-        //calculate the error by finding the difference between the predicted and updated Q-values
-        //the error is used to calculate the gradients for backpropagation
-        double[] error = new double[updatedQValues.length];
-        for (int i = 0; i < updatedQValues.length; i++) {
-            error[i] = updatedQValues[i] - networkOutput[i];
+    //find the largest Q-value among the actions that lead onto a path from the state
+    private static double maxOpen(double[] qValues, State state) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (Action action : Action.ALL) {
+            if (state.isPath(action) && qValues[action.index()] > max) {
+                max = qValues[action.index()];
+            }
         }
+        //a state boxed in by walls has nothing to bootstrap from
+        return (max == Double.NEGATIVE_INFINITY) ? 0.0 : max;
+    }
+
+    public void backpropagate(Experience experience, double[] updatedQValues) {
+        //calculate the output of the neural network (predicted Q-values)
+        //based on the current state action pair
+        //this also refreshes the stored outputs of every layer for the current inputs
+        backpropagateLastPass(predict(experience), updatedQValues);
+    }
 
-        //backpropagation through the output layer
-        //calculate gradient for output layer: (∂L / ∂z) = error * σ'(z)
-        //where z is the output of the neural network and σ'(z) is the derivative of ReLU activation function
+    //backpropagate using the activations every layer stored during the most recent forward pass
+    //networkOutput is the output of that pass, the caller must not have run another pass since
+    private void backpropagateLastPass(double[] networkOutput, double[] updatedQValues) {
+        //calculate the gradient of the squared error loss L = 1/2 * (output - target)^2
+        //for the linear output layer: (∂L / ∂z) = output - target, clipped to [-MAX_ERROR, MAX_ERROR]
         double[] outputGradients = new double[networkOutput.length];
         for (int i = 0; i < outputGradients.length; i++) {
-            outputGradients[i] = error[i] * reluDerivative(networkOutput[i]);   //use the ReLU derivative to calculate the gradient
+            double error = networkOutput[i] - updatedQValues[i];
+            outputGradients[i] = Math.max(-MAX_ERROR, Math.min(MAX_ERROR, error));
         }
 
+        //calculate the gradients for the last hidden layer before the output weights change
+        double[] nextGradients = output.calcNextGradients(outputGradients);
+
         //update output layer weights and biases using calculated
-        //weight gradients and output gradients
-        output.updateWeights(calcWGradients(outputGradients, inputs), outputGradients, alpha);
+        //weight gradients and the outputs of the last hidden layer
+        output.updateWeights(calcWGradients(outputGradients, hidden[hidden.length - 1].getOutputs()), outputGradients, alpha);
 
         //backpropagation through hidden layers
         //this is for calculating the gradients for weight updates
-        double[] nextGradients = outputGradients;
         for (int i = hidden.length - 1; i >= 0; i--) {
             Layer currentLayer = hidden[i];
-            double[] currentOutputs = (i == 0) ? inputs : hidden[i - 1].getOutputs();
+            //the input layer passes its inputs straight through, so its outputs are the encoded inputs
+            //a sparse first layer keeps its own record of the active inputs
+            double[] currentInputs = (i == 0) ? input.getOutputs() : hidden[i - 1].getOutputs();
+            double[] currentOutputs = currentLayer.getOutputs();
             double[] layerGradients = new double[currentLayer.getOutputSize()];
 
             //calcuate the gradients of each neuron in the current hidden layer l,
             //using the gradients of the layer above (l + 1)
             //δ^(l) = ((W^(l+1)^T * δ^(l + 1) * σ'(z^(l))
             //where W^(l + 1) is the weight matrix from layer l to layer l + 1
-            //δ^(l + 1) is the gradient from the next layer, and 
+            //δ^(l + 1) is the gradient from the next layer, and
             //σ'(z^(l)) is the derivative of the activation function at layer l.
             for (int j = 0; j < layerGradients.length; j++) {
                 //calculate the gradient for each neuron in the current layer by using gradients
@@ -122,13 +279,22 @@ public class QLearningNetwork {
                 layerGradients[j] = nextGradients[j] * reluDerivative(currentOutputs[j]);
             }
 
+            //a sparse first layer only updates the weight rows that were active and has no layer before it
+            if (i == 0 && encoding != null) {
+                ((SparseHidden) currentLayer).updateSparse(layerGradients, alpha);
+                break;
+            }
+
+            //calculate next gradients for the previous layer before the weights of this layer change
+            //the hidden layer applies the ReLU derivative itself so it receives the raw gradients
+            //this prepares for backpropagation to the previous layer
+            double[] previousGradients = currentLayer.calcNextGradients(nextGradients);
+
             //update weights for the current layer using the calculated weight gradients
             //and layer gradients found from backpropagation
-            currentLayer.updateWeights(calcWGradients(layerGradients, currentOutputs), layerGradients, alpha);
+            currentLayer.updateWeights(calcWGradients(layerGradients, currentInputs), layerGradients, alpha);
 
-            //calculate next gradients for the previous layer using layer gradients calculated for current layer
-            //this prepares for backpropagation to the previous layer
-            nextGradients = currentLayer.calcNextGradients(layerGradients);
+            nextGradients = previousGradients;
         }
     }
 
@@ -136,7 +302,7 @@ public class QLearningNetwork {
     //the derivative indicates how much the output of the ReLU function changes
     //with respect to changes in its input
     //             1 if x > 0
-    //ReLU'(x) = { 
+    //ReLU'(x) = {
     //             0 if x <= 0
     private double reluDerivative(double output) {
         return (output > 0) ? 1 : 0;
@@ -0,0 +1,54 @@
+package neuralnetwork;
+
+//layout of a sparse network input:
+//the state coordinates, then a one-hot action (for the STATE_ACTION head), then optionally a one-hot cell id
+//the cell id lets the network tell every cell apart on large mazes without widening the dense part
+public class SparseEncoding {
+
+    private final QLearningNetwork.Head head;
+    private final boolean actionOneHot;
+    private final int mazeHeight;   //used to number cells as x * mazeHeight + y
+    private final int cellCount;    //0 when cells are not one-hot encoded
+    private final int actionOffset; //first input row of the action segment
+    private final int cellOffset;   //first input row of the cell segment
+    private final int size;
+
+    //coordinates and, for the STATE_ACTION head, the one-hot action
+    public SparseEncoding(QLearningNetwork.Head head) {
+        this(head, 0, 0);
+    }
+
+    //coordinates, the one-hot action for the STATE_ACTION head, and a one-hot id for every cell of the maze
+    public SparseEncoding(QLearningNetwork.Head head, int mazeWidth, int mazeHeight) {
+        this.head = head;
+        this.actionOneHot = (head == QLearningNetwork.Head.STATE_ACTION);
+        this.mazeHeight = mazeHeight;
+        this.cellCount = mazeWidth * mazeHeight;
+        this.actionOffset = State.INPUT_SIZE;
+        this.cellOffset = actionOffset + (actionOneHot ? Action.COUNT : 0);
+        this.size = cellOffset + cellCount;
+    }
+
+    //the network head this layout was built for, a network reading it must use the same head
+    public QLearningNetwork.Head getHead() {
+        return head;
+    }
+
+    //length of the equivalent dense input
+    public int size() {
+        return size;
+    }
+
+    //encode the state, and the action for the STATE_ACTION head (ignored otherwise)
+    public SparseInput encode(State state, Action action) {
+        int[] hot = new int[(actionOneHot ? 1 : 0) + (cellCount > 0 ? 1 : 0)];
+        int n = 0;
+        if (actionOneHot) {
+            hot[n++] = actionOffset + action.index();
+        }
+        if (cellCount > 0) {
+            hot[n++] = cellOffset + state.getX() * mazeHeight + state.getY();
+        }
+        return new SparseInput(state.convertToInput(), hot, size);
+    }
+}
@@ -0,0 +1,88 @@
+package neuralnetwork;
+
+import java.util.Random;
+
+//hidden layer for the first layer of the network when most of its input is one-hot
+//a one-hot row contributes exactly its weight row, so the forward pass gathers those rows
+//instead of multiplying through every input, and the update only touches the rows that were active
+//dense inputs still go through the normal Hidden forward pass
+public class SparseHidden extends Hidden {
+
+    private SparseInput sparseInputs;
+
+    public SparseHidden(int inputSize, int outputSize) {
+        super(inputSize, outputSize);
+    }
+
+    public SparseHidden(int inputSize, int outputSize, Random random) {
+        super(inputSize, outputSize, random);
+    }
+
+    //forward pass over a sparse input
+    //cost is (dense rows + one-hot segments) * outputs instead of input size * outputs
+    public double[] forward(SparseInput inputs) {
+        this.sparseInputs = inputs;
+        this.inputs = null;
+
+        //start with the bias of each neuron
+        System.arraycopy(biases, 0, outputs, 0, outputs.length);
+
+        //add the product of each dense input and its weight row
+        double[] dense = inputs.getDense();
+        for (int i = 0; i < dense.length; i++) {
+            double x = dense[i];
+            if (x == 0) {
+                continue;
+            }
+            double[] row = weights[i];
+            for (int j = 0; j < outputs.length; j++) {
+                outputs[j] += x * row[j];
+            }
+        }
+
+        //a one-hot input is 1, so its weight row is added as it is
+        for (int hot : inputs.getHot()) {
+            double[] row = weights[hot];
+            for (int j = 0; j < outputs.length; j++) {
+                outputs[j] += row[j];
+            }
+        }
+
+        //apply ReLU activation function: max(0, output[j])
+        for (int j = 0; j < outputs.length; j++) {
+            outputs[j] = Math.max(0, outputs[j]);
+        }
+
+        return outputs;
+    }
+
+    //update the weights after a sparse forward pass
+    //(∂L / ∂wij) = (∂L / ∂oj) * xi is zero for every row with xi = 0, so only the active rows are updated
+    //and no gradient matrix is built
+    public void updateSparse(double[] layerGradients, double learningRate) {
+        double[] dense = sparseInputs.getDense();
+        for (int i = 0; i < dense.length; i++) {
+            double x = dense[i];
+            if (x == 0) {
+                continue;
+            }
+            double[] row = weights[i];
+            for (int j = 0; j < row.length; j++) {
+                row[j] -= learningRate * layerGradients[j] * x;
+            }
+        }
+
+        for (int hot : sparseInputs.getHot()) {
+            double[] row = weights[hot];
+            for (int j = 0; j < row.length; j++) {
+                row[j] -= learningRate * layerGradients[j];
+            }
+        }
+
+        //biases are always active
+        for (int j = 0; j < biases.length; j++) {
+            biases[j] -= learningRate * layerGradients[j];
+        }
+        bumpVersion();
+    }
+}
@@ -0,0 +1,39 @@
+package neuralnetwork;
+
+//network input made of a few dense values followed by one-hot segments
+//only the positions of the ones are stored, so a layer can gather the matching weight rows
+//instead of multiplying through every zero
+public class SparseInput {
+
+    private final double[] dense; //values for input rows 0..dense.length - 1
+    private final int[] hot;      //input rows that are 1, all at or after dense.length
+    private final int size;       //length of the equivalent dense input
+
+    public SparseInput(double[] dense, int[] hot, int size) {
+        this.dense = dense;
+        this.hot = hot;
+        this.size = size;
+    }
+
+    public double[] getDense() {
+        return dense;
+    }
+
+    public int[] getHot() {
+        return hot;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //expand into the equivalent dense input, for layers without a sparse path
+    public double[] toDense() {
+        double[] inputs = new double[size];
+        System.arraycopy(dense, 0, inputs, 0, dense.length);
+        for (int row : hot) {
+            inputs[row] = 1;
+        }
+        return inputs;
+    }
+}
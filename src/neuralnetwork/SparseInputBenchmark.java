@@ -0,0 +1,94 @@
+package neuralnetwork;
+
+import java.util.Random;
+
+//compares one forward and backward step of the first layer fed densely (Hidden) and sparsely (SparseHidden)
+//the input is the STATE_ACTION encoding plus a one-hot cell id, so it widens with the maze
+//usage: SparseInputBenchmark [hidden size] [steps]
+public class SparseInputBenchmark {
+
+    private static final int[] MAZE_SIZES = {8, 32, 64, 128};
+    private static final double LEARNING_RATE = 0.001;
+
+    public static void main(String[] args) {
+        int hiddenSize = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        for (int size : MAZE_SIZES) {
+            int[][] maze = MazeApp.generateMaze(size, new Random(size));
+            SparseEncoding encoding = new SparseEncoding(QLearningNetwork.Head.STATE_ACTION, size, size);
+            SparseInput[] inputs = sampleInputs(maze, encoding, 256, new Random(1));
+
+            Hidden dense = new Hidden(encoding.size(), hiddenSize);
+            SparseHidden sparse = new SparseHidden(encoding.size(), hiddenSize);
+            sparse.copyParameters(dense);
+
+            //warm up both paths before timing them
+            runDense(dense, inputs, steps / 10);
+            runSparse(sparse, inputs, steps / 10);
+
+            double denseSeconds = runDense(dense, inputs, steps);
+            double sparseSeconds = runSparse(sparse, inputs, steps);
+
+            System.out.printf("maze=%dx%d inputs=%d dense=%.1f steps/s sparse=%.1f steps/s speedup=%.1fx%n",
+                    size, size, encoding.size(), steps / denseSeconds, steps / sparseSeconds, denseSeconds / sparseSeconds);
+        }
+    }
+
+    //encoded (cell, action) pairs from the open cells of the maze
+    private static SparseInput[] sampleInputs(int[][] maze, SparseEncoding encoding, int count, Random random) {
+        SparseInput[] inputs = new SparseInput[count];
+        int n = 0;
+        while (n < count) {
+            int x = random.nextInt(maze.length);
+            int y = random.nextInt(maze[0].length);
+            if (maze[x][y] == 0) {
+                State state = new State(x, y, maze);
+                inputs[n++] = encoding.encode(state, Action.ALL.get(random.nextInt(Action.COUNT)));
+            }
+        }
+        return inputs;
+    }
+
+    //forward pass, full weight gradient matrix and update, as QLearningNetwork does for a dense first layer
+    private static double runDense(Hidden layer, SparseInput[] inputs, int steps) {
+        double[][] denseInputs = new double[inputs.length][];
+        for (int i = 0; i < inputs.length; i++) {
+            denseInputs[i] = inputs[i].toDense();
+        }
+
+        long start = System.nanoTime();
+        for (int s = 0; s < steps; s++) {
+            double[] x = denseInputs[s % denseInputs.length];
+            double[] outputs = layer.forward(x);
+            double[] gradients = pseudoGradients(outputs);
+
+            double[][] weightGradients = new double[x.length][gradients.length];
+            for (int i = 0; i < x.length; i++) {
+                for (int j = 0; j < gradients.length; j++) {
+                    weightGradients[i][j] = gradients[j] * x[i];
+                }
+            }
+            layer.updateWeights(weightGradients, gradients, LEARNING_RATE);
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    private static double runSparse(SparseHidden layer, SparseInput[] inputs, int steps) {
+        long start = System.nanoTime();
+        for (int s = 0; s < steps; s++) {
+            double[] outputs = layer.forward(inputs[s % inputs.length]);
+            layer.updateSparse(pseudoGradients(outputs), LEARNING_RATE);
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    //a small gradient derived from the outputs, so both paths do the same arithmetic
+    private static double[] pseudoGradients(double[] outputs) {
+        double[] gradients = new double[outputs.length];
+        for (int j = 0; j < outputs.length; j++) {
+            gradients[j] = (outputs[j] > 0) ? outputs[j] * 0.01 : 0;
+        }
+        return gradients;
+    }
+}
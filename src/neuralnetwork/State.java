@@ -9,6 +9,8 @@ public class State {
 
     private int x;
     private int y;
+    private int mazeWidth;  //size of the maze, used to scale the coordinates fed to the network
+    private int mazeHeight;
     private Map<Action, Surrounding> surroundings; //maps each action to either WALL or PATH
 
     public static final int NORTH = 0;
@@ -16,10 +18,19 @@ public class State {
     public static final int EAST = 2;
     public static final int WEST = 3;
 
+    public static final int INPUT_SIZE = 2; //length of the state-only encoding from convertToInput()
+
     //constructor for the coordinates and the surroundings
     public State(int x, int y, int[][] maze) {
+        this(x, y, new ArrayMaze(maze));
+    }
+
+    //constructor for a state in any maze that answers wall queries
+    public State(int x, int y, MazeGrid maze) {
         this.x = x;
         this.y = y;
+        this.mazeWidth = maze.getWidth();
+        this.mazeHeight = maze.getHeight();
         this.surroundings = getSurroundings(x, y, maze);
     }
 
@@ -47,6 +58,11 @@ public class State {
 
     //get the next state based on the action
     public State getNextState(Action action, int[][] maze) {
+        return getNextState(action, new ArrayMaze(maze));
+    }
+
+    //get the next state based on the action in any maze that answers wall queries
+    public State getNextState(Action action, MazeGrid maze) {
         if (!isPath(action)) {
             return null;    //return null is the directions is a wall
         }
@@ -57,12 +73,23 @@ public class State {
 
         //create new state with updated surroundings
         return new State(newX, newY, maze);
+    }
 
+    //method for encoding only the State coordinates into an array
+    //used by the state-only network head, which outputs a Q-value for every action at once
+    //coordinates are scaled into [0, 1] by the maze size, raw coordinates reach the thousands on
+    //large mazes and make the weight updates blow up
+    public double[] convertToInput() {
+        return new double[]{scale(x, mazeWidth), scale(y, mazeHeight)};
+    }
+
+    private static double scale(int coordinate, int size) {
+        return (size > 1) ? (double) coordinate / (size - 1) : 0.0;
     }
 
     //method for encoding State coordinates and Action direction values into an array
     public double[] convertToInput(Action action) {
-        double[] stateInput = new double[]{this.getX(), this.getY()};
+        double[] stateInput = convertToInput();
         double[] actionInput = action.convertToInput();
 
         double[] combinedInput = new double[stateInput.length + actionInput.length];
@@ -73,20 +100,20 @@ public class State {
     }
 
     public static Map<Action, Surrounding> getSurroundings(int x, int y, int[][] maze) {
+        return getSurroundings(x, y, new ArrayMaze(maze));
+    }
+
+    public static Map<Action, Surrounding> getSurroundings(int x, int y, MazeGrid maze) {
         Map<Action, Surrounding> surroundings = new HashMap<>();
 
-        // Check each direction
-        if (x > 0) { // North
-            surroundings.put(Action.NORTH, maze[x - 1][y] == 1 ? Surrounding.WALL : Surrounding.PATH);
-        }
-        if (x < maze.length - 1) { // South
-            surroundings.put(Action.SOUTH, maze[x + 1][y] == 1 ? Surrounding.WALL : Surrounding.PATH);
-        }
-        if (y > 0) { // West
-            surroundings.put(Action.WEST, maze[x][y - 1] == 1 ? Surrounding.WALL : Surrounding.PATH);
-        }
-        if (y < maze[0].length - 1) { // East
-            surroundings.put(Action.EAST, maze[x][y + 1] == 1 ? Surrounding.WALL : Surrounding.PATH);
+        //check the cell each action would move into, using the same deltas as getNextState
+        //directions that would leave the maze are not included
+        for (Action action : Action.ALL) {
+            int newX = x + action.getDeltaX();
+            int newY = y + action.getDeltaY();
+            if (newX >= 0 && newX < maze.getWidth() && newY >= 0 && newY < maze.getHeight()) {
+                surroundings.put(action, maze.isWall(newX, newY) ? Surrounding.WALL : Surrounding.PATH);
+            }
         }
 
         return surroundings;
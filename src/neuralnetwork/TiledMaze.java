@@ -0,0 +1,296 @@
+package neuralnetwork;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+//out-of-core maze storage for mazes far too large to hold as an int[][]
+//the maze is split into fixed-size square tiles of one bit per cell (1 = wall)
+//a tile is generated on first touch, written to a memory-mapped file, and kept on the heap
+//in an LRU cache holding at most residentTiles tiles; evicted tiles are read back from the file
+//not safe to share between threads
+public class TiledMaze implements MazeGrid, Closeable {
+
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    private static final long SEGMENT_BYTES = 1L << 30; //each mapping of the file covers at most 1 GB
+
+    private final int tileSize;
+    private final int tilesX;
+    private final int tilesY;
+    private final int width;
+    private final int height;
+    private final long seed;
+    private final int tileWords;   //longs per tile, tileSize * tileSize / 64
+    private final int tilesPerSegment;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments; //mapped lazily as tiles inside them are first written
+    private final long[] generated;            //one bit per tile, set once the tile has been written to the file
+    private final Map<Integer, long[]> cache;  //resident tiles in least recently used order
+
+    //the most recently used tile, checked before the cache since walks mostly stay inside one tile
+    private int lastTile = -1;
+    private long[] lastBits;
+
+    //metrics, hits and misses count only lookups in the cache, a query answered by the last tile is neither
+    private long lastTileHits;
+    private long hits;
+    private long misses;
+    private long generatedTiles;
+    private long fileLoads;
+    private long evictions;
+
+    //create a maze of at least width x height cells backed by a temporary file
+    public TiledMaze(int width, int height, int residentTiles, long seed) throws IOException {
+        this(width, height, DEFAULT_TILE_SIZE, residentTiles, seed, Files.createTempFile("maze", ".tiles"));
+        file.toFile().deleteOnExit();
+    }
+
+    //create a maze of at least width x height cells backed by the given file
+    //the size is rounded up to whole tiles so every tile is a complete maze of its own
+    public TiledMaze(int width, int height, int tileSize, int residentTiles, long seed, Path file) throws IOException {
+        if (tileSize <= 0 || tileSize % 8 != 0) {
+            throw new IllegalArgumentException("Tile size must be a positive multiple of 8: " + tileSize);
+        }
+        if (residentTiles < 1) {
+            throw new IllegalArgumentException("At least one tile must be resident: " + residentTiles);
+        }
+
+        this.tileSize = tileSize;
+        this.tilesX = (width + tileSize - 1) / tileSize;
+        this.tilesY = (height + tileSize - 1) / tileSize;
+        if ((long) tilesX * tilesY > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many tiles for a " + width + "x" + height + " maze");
+        }
+        this.width = tilesX * tileSize;
+        this.height = tilesY * tileSize;
+        this.seed = seed;
+        this.tileWords = tileSize * tileSize / 64;
+        this.tilesPerSegment = (int) (SEGMENT_BYTES / tileBytes());
+
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int tileCount = tilesX * tilesY;
+        this.segments = new MappedByteBuffer[(tileCount + tilesPerSegment - 1) / tilesPerSegment];
+        this.generated = new long[(tileCount + 63) / 64];
+
+        this.cache = new LinkedHashMap<Integer, long[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, long[]> eldest) {
+                if (size() > residentTiles) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public boolean isWall(int x, int y) {
+        int tile = (x / tileSize) * tilesY + (y / tileSize);
+        if (tile == lastTile) {
+            lastTileHits++;
+        } else {
+            lastBits = touch(tile);
+            lastTile = tile;
+        }
+
+        long[] bits = lastBits;
+        int bit = (x % tileSize) * tileSize + (y % tileSize);
+        return (bits[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    //find a tile in the cache, reading it from the file or generating it on a miss
+    private long[] touch(int tile) {
+        long[] bits = cache.get(tile);
+        if (bits != null) {
+            hits++;
+            return bits;
+        }
+
+        misses++;
+        bits = new long[tileWords];
+        if ((generated[tile >>> 6] & (1L << tile)) != 0) {
+            tileBuffer(tile).get(bits);
+            fileLoads++;
+        } else {
+            generateTile(tile, bits);
+            tileBuffer(tile).put(bits);
+            generated[tile >>> 6] |= 1L << tile;
+            generatedTiles++;
+        }
+        cache.put(tile, bits);
+        return bits;
+    }
+
+    //view of the tile's region in the mapped file
+    private LongBuffer tileBuffer(int tile) {
+        int segment = tile / tilesPerSegment;
+        if (segments[segment] == null) {
+            try {
+                long size = (long) Math.min(tilesPerSegment, tilesX * tilesY - segment * tilesPerSegment) * tileBytes();
+                segments[segment] = channel.map(FileChannel.MapMode.READ_WRITE, (long) segment * tilesPerSegment * tileBytes(), size);
+                segments[segment].order(ByteOrder.nativeOrder());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        LongBuffer longs = segments[segment].asLongBuffer();
+        longs.position((tile % tilesPerSegment) * tileWords);
+        return longs;
+    }
+
+    private int tileBytes() {
+        return tileWords * 8;
+    }
+
+    //carve a tile the same way MazeApp carves a maze, using only the tile's own seed so any tile can be built alone
+    //cells at odd local coordinates are rooms and local row/column 0 is the wall shared with the tile to the west/north
+    //each tile opens one gap in that shared wall so it joins its neighbours
+    private void generateTile(int tile, long[] bits) {
+        int tileX = tile / tilesY;
+        int tileY = tile % tilesY;
+        Random random = new Random(seed ^ (tile * 0x9E3779B97F4A7C15L));
+
+        //start with every cell as a wall
+        Arrays.fill(bits, -1L);
+
+        int rooms = tileSize / 2;
+        int[] stack = new int[rooms * rooms];
+        int top = 0;
+        clear(bits, 1, 1);
+        stack[top++] = tileSize + 1;
+
+        int[] candidates = new int[4];
+        while (top > 0) {
+            int cell = stack[top - 1];
+            int x = cell / tileSize;
+            int y = cell % tileSize;
+
+            //collect the neighbouring rooms that have not been carved yet
+            int count = 0;
+            if (x + 2 < tileSize && isSet(bits, x + 2, y)) {
+                candidates[count++] = 0;
+            }
+            if (x - 2 > 0 && isSet(bits, x - 2, y)) {
+                candidates[count++] = 1;
+            }
+            if (y + 2 < tileSize && isSet(bits, x, y + 2)) {
+                candidates[count++] = 2;
+            }
+            if (y - 2 > 0 && isSet(bits, x, y - 2)) {
+                candidates[count++] = 3;
+            }
+
+            //dead end, backtrack to the previous room
+            if (count == 0) {
+                top--;
+                continue;
+            }
+
+            int dir = candidates[random.nextInt(count)];
+            int dx = (dir == 0) ? 2 : (dir == 1) ? -2 : 0;
+            int dy = (dir == 2) ? 2 : (dir == 3) ? -2 : 0;
+
+            //carve the wall between the rooms and the new room
+            clear(bits, x + dx / 2, y + dy / 2);
+            clear(bits, x + dx, y + dy);
+            stack[top++] = (x + dx) * tileSize + (y + dy);
+        }
+
+        //open the shared walls at a random room on the boundary
+        if (tileX > 0) {
+            clear(bits, 0, 2 * random.nextInt(rooms) + 1);
+        }
+        if (tileY > 0) {
+            clear(bits, 2 * random.nextInt(rooms) + 1, 0);
+        }
+    }
+
+    private boolean isSet(long[] bits, int x, int y) {
+        int bit = x * tileSize + y;
+        return (bits[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private void clear(long[] bits, int x, int y) {
+        int bit = x * tileSize + y;
+        bits[bit >>> 6] &= ~(1L << bit);
+    }
+
+    //getters for the metrics
+    public long getLastTileHits() {
+        return lastTileHits;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    //fraction of cache lookups that found the tile resident, queries answered by the last tile are not lookups
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public long getGeneratedTiles() {
+        return generatedTiles;
+    }
+
+    public long getFileLoads() {
+        return fileLoads;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public int getResidentTiles() {
+        return cache.size();
+    }
+
+    public void resetMetrics() {
+        lastTileHits = 0;
+        hits = 0;
+        misses = 0;
+        generatedTiles = 0;
+        fileLoads = 0;
+        evictions = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        cache.clear();
+        lastTile = -1;
+        lastBits = null;
+        channel.close();
+    }
+}
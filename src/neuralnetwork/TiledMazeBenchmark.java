@@ -0,0 +1,72 @@
+package neuralnetwork;
+
+import java.io.IOException;
+import java.util.Random;
+
+//random-walk throughput of TiledMaze at several resident cache sizes
+//usage: TiledMazeBenchmark [size] [walkers] [steps per walker]
+//each walker starts from a random room and moves through open cells, so walkers spread across tiles
+public class TiledMazeBenchmark {
+
+    private static final int[] RESIDENT_TILES = {64, 512, 2048, 8192};
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int walkers = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        int steps = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+
+        for (int residentTiles : RESIDENT_TILES) {
+            try (TiledMaze maze = new TiledMaze(size, size, residentTiles, 42L)) {
+                //warm up the JIT on a separate walk so the first cache size is not penalised
+                walk(maze, walkers / 10 + 1, steps, new Random(7));
+                maze.resetMetrics();
+
+                long start = System.nanoTime();
+                long queries = walk(maze, walkers, steps, new Random(1));
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                //the hit rate covers only the queries that left the last tile and had to look in the cache
+                System.out.printf("size=%d resident=%d queries=%d queries/s=%.0f lastTileHits=%d lookups=%d hitRate=%.4f misses=%d generated=%d fileLoads=%d evictions=%d%n",
+                        maze.getWidth(), residentTiles, queries, queries / seconds, maze.getLastTileHits(),
+                        maze.getHits() + maze.getMisses(), maze.getHitRate(),
+                        maze.getMisses(), maze.getGeneratedTiles(), maze.getFileLoads(), maze.getEvictions());
+            }
+        }
+    }
+
+    //random walks that query the same walls State.getSurroundings would, returning the number of wall queries
+    //the walkers take turns one step at a time, so the tiles they occupy form the working set of the cache
+    private static long walk(TiledMaze maze, int walkers, int steps, Random random) {
+        long queries = 0;
+        Action[] open = new Action[Action.COUNT];
+
+        //rooms sit at odd coordinates
+        int[] xs = new int[walkers];
+        int[] ys = new int[walkers];
+        for (int w = 0; w < walkers; w++) {
+            xs[w] = 2 * random.nextInt(maze.getWidth() / 2) + 1;
+            ys[w] = 2 * random.nextInt(maze.getHeight() / 2) + 1;
+        }
+
+        for (int s = 0; s < steps; s++) {
+            for (int w = 0; w < walkers; w++) {
+                int count = 0;
+                for (Action action : Action.ALL) {
+                    int newX = xs[w] + action.getDeltaX();
+                    int newY = ys[w] + action.getDeltaY();
+                    if (newX >= 0 && newX < maze.getWidth() && newY >= 0 && newY < maze.getHeight()) {
+                        queries++;
+                        if (!maze.isWall(newX, newY)) {
+                            open[count++] = action;
+                        }
+                    }
+                }
+
+                Action action = open[random.nextInt(count)];
+                xs[w] += action.getDeltaX();
+                ys[w] += action.getDeltaY();
+            }
+        }
+        return queries;
+    }
+}
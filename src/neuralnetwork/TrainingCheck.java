@@ -0,0 +1,422 @@
+package neuralnetwork;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+//end-to-end checks that the network heads train sensibly
+//run after changing the network, exits with status 1 if any check fails
+//usage: TrainingCheck
+public class TrainingCheck {
+
+    private static final int[] HIDDEN_SIZES = {32, 32};
+    private static final double ALPHA = 0.01;
+    private static final double GAMMA = 0.95;
+    private static final double CHAIN_ALPHA = 0.05; //alpha scales both the Q step and the weight step, so bootstrapping is slow at 0.01
+
+    private static int failures;
+
+    public static void main(String[] args) throws IOException {
+        checkNStepReturns(0.95, 8);
+        checkNStepReturns(1.0, 8);
+        checkNStepReturns(0.5, 32);
+        checkNStepReturns(0.1, 16);
+        checkNStepReturns(0.01, 8);
+        checkStateHeadStaysFinite();
+        checkLearnsTwoStepChain("STATE_ACTION head", new QLearningNetwork(State.INPUT_SIZE + Action.COUNT, Action.COUNT, HIDDEN_SIZES, CHAIN_ALPHA, GAMMA));
+        checkLearnsTwoStepChain("STATE head", new QLearningNetwork(HIDDEN_SIZES, CHAIN_ALPHA, GAMMA, new Random(0)));
+        checkSparseMatchesDense(new QLearningNetwork(State.INPUT_SIZE + Action.COUNT, Action.COUNT, HIDDEN_SIZES, ALPHA, GAMMA));
+        checkSparseMatchesDense(new QLearningNetwork(HIDDEN_SIZES, ALPHA, GAMMA));
+        checkLearnsTwoStepChain("sparse STATE_ACTION head with cell ids", new QLearningNetwork(
+                new SparseEncoding(QLearningNetwork.Head.STATE_ACTION, 8, 8), HIDDEN_SIZES, CHAIN_ALPHA, GAMMA));
+        checkLearnsTwoStepChain("sparse STATE head with cell ids", new QLearningNetwork(
+                new SparseEncoding(QLearningNetwork.Head.STATE, 8, 8), HIDDEN_SIZES, CHAIN_ALPHA, GAMMA));
+        checkPredictionCache(new QLearningNetwork(State.INPUT_SIZE + Action.COUNT, Action.COUNT, HIDDEN_SIZES, ALPHA, GAMMA));
+        checkPredictionCache(new QLearningNetwork(HIDDEN_SIZES, ALPHA, GAMMA, new Random(4)));
+        checkEvaluatorMatchesRollouts(QLearningNetwork.Head.STATE_ACTION);
+        checkEvaluatorMatchesRollouts(QLearningNetwork.Head.STATE);
+        checkTiledMazeConnected();
+        checkTiledMazeReloads();
+
+        if (failures > 0) {
+            System.out.println(failures + " check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("all checks passed");
+    }
+
+    //every return emitted by NStepAccumulator over a 2000-step stream must match the discounted sum taken directly
+    //episodes end at random, either in a terminal state or cut off by a flush
+    private static void checkNStepReturns(double gamma, int n) {
+        int[][] maze = MazeApp.generateMaze(8, new Random(0));
+        Random random = new Random(3);
+        int steps = 2_000;
+        double[] rewards = new double[steps];
+        int[] episodeEnds = new int[steps]; //index one past the last step of each step's episode
+
+        //collect the emitted experiences instead of storing them for sampling
+        Map<State, Integer> stepOf = new IdentityHashMap<>();
+        List<Experience> emitted = new ArrayList<>();
+        ExperienceReplay collector = new ExperienceReplay(1) {
+            @Override
+            public void addExperience(Experience experience) {
+                emitted.add(experience);
+            }
+        };
+        NStepAccumulator accumulator = new NStepAccumulator(n, gamma, collector);
+
+        int episodeStart = 0;
+        for (int t = 0; t < steps; t++) {
+            State state = new State(1, 1, maze);
+            stepOf.put(state, t);
+            rewards[t] = 2 * random.nextDouble() - 1;
+
+            double end = random.nextDouble();
+            boolean last = (t == steps - 1);
+            boolean terminal = !last && end < 0.005;
+            accumulator.step(state, Action.EAST, rewards[t], terminal ? null : new State(1, 1, maze));
+            if (!terminal && (last || end < 0.01)) {
+                accumulator.flush();
+            }
+            if (last || end < 0.01) {
+                for (int i = episodeStart; i <= t; i++) {
+                    episodeEnds[i] = t + 1;
+                }
+                episodeStart = t + 1;
+            }
+        }
+
+        //relative to the size of the rewards summed, and absolute near zero
+        double largest = 0.0;
+        boolean spansMatch = (emitted.size() == steps);
+        for (Experience experience : emitted) {
+            int t = stepOf.get(experience.getCurrentState());
+            spansMatch &= experience.getSteps() == Math.min(n, episodeEnds[t] - t);
+
+            double expected = 0.0;
+            double scale = 0.0;
+            double discount = 1.0;
+            for (int j = 0; j < experience.getSteps(); j++) {
+                expected += discount * rewards[t + j];
+                scale += discount * Math.abs(rewards[t + j]);
+                discount *= gamma;
+            }
+            largest = Math.max(largest, Math.abs(experience.getRewardReceived() - expected) / Math.max(1.0, scale));
+        }
+        report(spansMatch && largest < 1e-9,
+                "n-step returns match a direct sum for gamma=" + gamma + " n=" + n + " (largest error " + largest + ")");
+    }
+
+    //uniform-random behaviour with replay on several mazes, Q(1,1) must stay finite
+    private static void checkStateHeadStaysFinite() {
+        for (int size : new int[]{8, 32}) {
+            for (int seed = 0; seed < 5; seed++) {
+                int[][] maze = MazeApp.generateMaze(size, new Random(seed));
+                QLearningNetwork network = new QLearningNetwork(HIDDEN_SIZES, ALPHA, GAMMA, new Random(seed));
+                trainRandomWalk(network, maze, 30_000, new Random(seed));
+
+                double[] qValues = network.predict(new State(1, 1, maze));
+                boolean finite = true;
+                for (double q : qValues) {
+                    finite &= !Double.isNaN(q) && Math.abs(q) < 1e3;
+                }
+                report(finite, "STATE head stays finite on " + size + "x" + size + " maze " + seed);
+            }
+        }
+    }
+
+    //s -a-> s' -a'-> terminal with reward 1: Q(s',a') must approach 1 and Q(s,a) must bootstrap to gamma
+    //the other moves out of s' end with nothing, so the max over s' is Q(s',a')
+    private static void checkLearnsTwoStepChain(String name, QLearningNetwork network) {
+        int[][] maze = MazeApp.generateMaze(8, new Random(1));
+        State state = new State(1, 1, maze);
+        Action action = firstOpen(state);
+        State next = state.getNextState(action, maze);
+        Action nextAction = firstOpen(next);
+
+        for (int i = 0; i < 15_000; i++) {
+            for (Action other : Action.ALL) {
+                if (next.isPath(other)) {
+                    network.train(new Experience(next, other, (other == nextAction) ? 1.0 : 0.0, null));
+                }
+            }
+            network.train(new Experience(state, action, 0.0, next));
+        }
+
+        double qNext = network.predict(new Experience(next, nextAction, 0, null))[nextAction.index()];
+        double q = network.predict(new Experience(state, action, 0, null))[action.index()];
+        report(Math.abs(qNext - 1.0) < 0.05 && Math.abs(q - GAMMA) < 0.05,
+                name + " learns a two-step chain (Q(s',a')=" + qNext + ", Q(s,a)=" + q + ")");
+    }
+
+    //without cell ids the sparse encoding holds the same inputs as the dense one, so a sparse network
+    //starting from the dense network's weights must make the same predictions through the same training
+    private static void checkSparseMatchesDense(QLearningNetwork dense) {
+        QLearningNetwork sparse = new QLearningNetwork(new SparseEncoding(dense.getHead()), HIDDEN_SIZES, ALPHA, GAMMA);
+        sparse.loadWeights(dense);
+
+        int[][] maze = MazeApp.generateMaze(16, new Random(2));
+        List<Experience> experiences = randomWalk(maze, 5_000, new Random(2));
+        for (Experience experience : experiences) {
+            dense.train(experience);
+            sparse.train(experience);
+        }
+
+        double largest = 0.0;
+        for (Experience experience : experiences.subList(0, 200)) {
+            double[] expected = dense.predict(experience).clone();
+            double[] actual = sparse.predict(experience);
+            for (int i = 0; i < expected.length; i++) {
+                largest = Math.max(largest, Math.abs(expected[i] - actual[i]));
+            }
+        }
+        report(largest < 1e-9, "sparse " + dense.getHead() + " head trains like the dense one (largest difference " + largest + ")");
+    }
+
+    //a PredictionCache far smaller than the number of keys, over a network trained every 997 lookups,
+    //must return exactly what a fresh forward pass returns, through hits, stale entries and evictions alike
+    private static void checkPredictionCache(QLearningNetwork network) {
+        boolean stateHead = (network.getHead() == QLearningNetwork.Head.STATE);
+        int[][] maze = MazeApp.generateMaze(16, new Random(5));
+        Random random = new Random(5);
+        List<Experience> experiences = randomWalk(maze, 2_000, random);
+        PredictionCache cache = new PredictionCache(network, 16);
+
+        int mismatches = 0;
+        for (int i = 1; i <= 50_000; i++) {
+            //revisit a few dozen cells so lookups hit, miss, go stale and evict
+            Experience experience = experiences.get(random.nextInt(40));
+            State state = experience.getCurrentState();
+            Action action = experience.getAction();
+
+            double[] cached = (stateHead ? cache.predict(state) : cache.predict(state, action)).clone();
+            double[] fresh = stateHead ? network.predict(state) : network.predict(new Experience(state, action, 0, null));
+            if (!Arrays.equals(cached, fresh)) {
+                mismatches++;
+            }
+
+            if (i % 997 == 0) {
+                for (int u = 0; u < 10; u++) {
+                    network.train(experiences.get(random.nextInt(experiences.size())));
+                }
+            }
+        }
+        report(mismatches == 0 && cache.getHits() > 0 && cache.getStaleMisses() > 0 && cache.getEvictions() > 0,
+                network.getHead() + " head prediction cache matches fresh passes (mismatches " + mismatches
+                + ", hits " + cache.getHits() + ", stale " + cache.getStaleMisses() + ", evictions " + cache.getEvictions() + ")");
+    }
+
+    //PolicyEvaluator resolves every cell from its successor's outcome instead of walking each start,
+    //so its report must match following the greedy policy from every start one cell at a time
+    //networks trained for different lengths give policies that mix successes, cycles and lead-ins to cycles
+    private static void checkEvaluatorMatchesRollouts(QLearningNetwork.Head head) {
+        long totalSuccesses = 0;
+        long totalLoops = 0;
+        for (int seed = 0; seed < 3; seed++) {
+            int size = 8 + 4 * seed;
+            int[][] maze = MazeApp.generateMaze(size, new Random(seed));
+            PolicyEvaluator evaluator = new PolicyEvaluator(maze, size - 3, size - 3);
+            QLearningNetwork network = (head == QLearningNetwork.Head.STATE)
+                    ? new QLearningNetwork(HIDDEN_SIZES, CHAIN_ALPHA, GAMMA, new Random(seed))
+                    : new QLearningNetwork(State.INPUT_SIZE + Action.COUNT, Action.COUNT, HIDDEN_SIZES, CHAIN_ALPHA, GAMMA);
+
+            List<Experience> experiences = randomWalk(maze, 5_000, new Random(seed));
+            Random random = new Random(seed);
+            boolean matches = true;
+            long mazeSuccesses = 0;
+            long mazeLoops = 0;
+            for (int round = 0; round < 4; round++) {
+                //expected totals from walking every start directly
+                long successes = 0;
+                long loops = 0;
+                long steps = 0;
+                double pathRatioSum = 0.0;
+                boolean rolloutsMatch = true;
+                for (int x = 0; x < size; x++) {
+                    for (int y = 0; y < size; y++) {
+                        int distance = evaluator.getDistance(x, y);
+                        if (distance <= 0) {
+                            continue;
+                        }
+                        int taken = walkGreedy(network, maze, size - 3, x, y);
+                        rolloutsMatch &= evaluator.rollout(network, x, y) == ((taken >= 0) ? taken : -1);
+                        if (taken >= 0) {
+                            successes++;
+                            steps += taken;
+                            pathRatioSum += (double) taken / distance;
+                        } else {
+                            loops++;
+                            steps += -taken - 1;
+                        }
+                    }
+                }
+
+                EvaluationReport report = evaluator.evaluate(network);
+                matches &= rolloutsMatch
+                        && report.getEvaluated() == evaluator.getStartCount()
+                        && report.getSuccesses() == successes
+                        && report.getLoops() == loops
+                        && report.getSteps() == steps
+                        && (successes == 0 || Math.abs(report.getMeanPathRatio() - pathRatioSum / successes) < 1e-12);
+                mazeSuccesses += successes;
+                mazeLoops += loops;
+
+                for (int u = 0; u < 5_000; u++) {
+                    network.train(experiences.get(random.nextInt(experiences.size())));
+                }
+            }
+            report(matches, head + " head evaluator matches rollouts on " + size + "x" + size + " maze " + seed
+                    + " (successes " + mazeSuccesses + ", loops " + mazeLoops + ")");
+            totalSuccesses += mazeSuccesses;
+            totalLoops += mazeLoops;
+        }
+        //the comparison only means something if both kinds of outcome came up
+        report(totalSuccesses > 0 && totalLoops > 0, head + " head evaluator check saw successes and loops");
+    }
+
+    //follow the greedy policy one cell at a time, as a reference for PolicyEvaluator
+    //returns the steps taken to reach the goal, otherwise -(steps + 1) with the steps taken before a cell repeated
+    private static int walkGreedy(QLearningNetwork network, int[][] maze, int goal, int x, int y) {
+        boolean[][] visited = new boolean[maze.length][maze[0].length];
+        State state = new State(x, y, maze);
+        int steps = 0;
+        while (state.getX() != goal || state.getY() != goal) {
+            if (visited[state.getX()][state.getY()]) {
+                return -(steps + 1);
+            }
+            visited[state.getX()][state.getY()] = true;
+
+            Action action = PolicyEvaluator.greedyAction(network, state);
+            if (action == null) {
+                return -(steps + 1);
+            }
+            state = state.getNextState(action, maze);
+            steps++;
+        }
+        return steps;
+    }
+
+    //a BFS from (1, 1) over a 1024x1024 tiled maze must reach every open cell, so the gaps opened in the
+    //walls shared between tiles join them into one maze; only 4 of the 16 tiles stay resident,
+    //so the BFS also reads evicted tiles back from the file
+    private static void checkTiledMazeConnected() throws IOException {
+        try (TiledMaze maze = new TiledMaze(1024, 1024, 4, 11L)) {
+            int width = maze.getWidth();
+            int height = maze.getHeight();
+            boolean[] visited = new boolean[width * height];
+            int[] queue = new int[width * height];
+            int head = 0;
+            int tail = 0;
+            visited[width + 1] = true;
+            queue[tail++] = width + 1; //(1, 1), cells indexed by x * height + y
+
+            while (head < tail) {
+                int cell = queue[head++];
+                int x = cell / height;
+                int y = cell % height;
+                for (Action action : Action.ALL) {
+                    int newX = x + action.getDeltaX();
+                    int newY = y + action.getDeltaY();
+                    if (newX < 0 || newX >= width || newY < 0 || newY >= height || maze.isWall(newX, newY)) {
+                        continue;
+                    }
+                    int next = newX * height + newY;
+                    if (!visited[next]) {
+                        visited[next] = true;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+
+            int open = 0;
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    if (!maze.isWall(x, y)) {
+                        open++;
+                    }
+                }
+            }
+            report(tail == open && maze.getFileLoads() > 0,
+                    "tiled maze BFS reaches every open cell (reached " + tail + " of " + open
+                    + ", file loads " + maze.getFileLoads() + ")");
+        }
+    }
+
+    //with a single resident tile every tile is evicted and read back from the file on its next visit,
+    //and every cell must still match a maze built from the same seed that never evicts anything
+    private static void checkTiledMazeReloads() throws IOException {
+        try (TiledMaze evicting = new TiledMaze(1024, 1024, 1, 12L);
+                TiledMaze fresh = new TiledMaze(1024, 1024, 16, 12L)) {
+            int width = fresh.getWidth();
+            int height = fresh.getHeight();
+
+            //the first pass generates every tile, the second reads them all back from the file
+            int differences = 0;
+            for (int pass = 0; pass < 2; pass++) {
+                for (int x = 0; x < width; x++) {
+                    for (int y = 0; y < height; y++) {
+                        if (evicting.isWall(x, y) != fresh.isWall(x, y)) {
+                            differences++;
+                        }
+                    }
+                }
+            }
+            report(differences == 0 && evicting.getFileLoads() > 0 && fresh.getFileLoads() == 0,
+                    "tiled maze tiles read back from the file match a fresh maze (differences " + differences
+                    + ", file loads " + evicting.getFileLoads() + ")");
+        }
+    }
+
+    private static Action firstOpen(State state) {
+        for (Action action : Action.ALL) {
+            if (state.isPath(action)) {
+                return action;
+            }
+        }
+        throw new IllegalStateException("No open action from " + state.getX() + "," + state.getY());
+    }
+
+    //walk the maze with uniformly random moves, storing every transition and training on one sample per step
+    private static void trainRandomWalk(QLearningNetwork network, int[][] maze, int updates, Random random) {
+        ExperienceReplay replay = new ExperienceReplay(10_000, random);
+        for (Experience experience : randomWalk(maze, updates, random)) {
+            replay.addExperience(experience);
+            network.train(replay.sampleExperience());
+        }
+    }
+
+    //transitions of a uniformly random walk from (1, 1), restarting whenever the goal is reached
+    private static List<Experience> randomWalk(int[][] maze, int steps, Random random) {
+        int goal = maze.length - 3;
+        List<Experience> experiences = new ArrayList<>(steps);
+        List<Action> open = new ArrayList<>(Action.COUNT);
+
+        State state = new State(1, 1, maze);
+        for (int s = 0; s < steps; s++) {
+            open.clear();
+            for (Action action : Action.ALL) {
+                if (state.isPath(action)) {
+                    open.add(action);
+                }
+            }
+
+            Action action = open.get(random.nextInt(open.size()));
+            State next = state.getNextState(action, maze);
+            boolean atGoal = next.getX() == goal && next.getY() == goal;
+            experiences.add(new Experience(state, action, atGoal ? 1.0 : 0.0, atGoal ? null : next));
+            state = atGoal ? new State(1, 1, maze) : next;
+        }
+        return experiences;
+    }
+
+    private static void report(boolean passed, String name) {
+        System.out.println((passed ? "PASS " : "FAIL ") + name);
+        if (!passed) {
+            failures++;
+        }
+    }
+}